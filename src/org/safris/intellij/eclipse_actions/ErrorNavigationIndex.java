@@ -0,0 +1,414 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.codeInsight.daemon.impl.DaemonCodeAnalyzerEx;
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.codeInsight.daemon.impl.SeverityRegistrar;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.editor.event.EditorFactoryEvent;
+import com.intellij.openapi.editor.event.EditorFactoryListener;
+import com.intellij.openapi.editor.ex.MarkupModelEx;
+import com.intellij.openapi.editor.ex.RangeHighlighterEx;
+import com.intellij.openapi.editor.impl.DocumentMarkupModel;
+import com.intellij.openapi.editor.impl.event.MarkupModelListener;
+import com.intellij.openapi.editor.markup.MarkupModel;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+
+// Per-document index of the navigation positions of the highlights, sorted per severity, for SelectNextErrorHandler.
+// An index covers a range of lines, which starts at the line of the caret, and grows in windows that double in size in
+// the direction of navigation, until it has the info to go to. Only if there is none does it grow to the whole
+// document, for the wrap-around. The index is dropped when the daemon finishes, and until then, its positions are
+// shifted on edits of the document, so that each next or previous error is a binary search. The highlights that the
+// daemon adds or removes during its pass reset the covered range, if they are in it, so that it is built again from
+// the highlights on next use. Only accessed from the EDT.
+final class ErrorNavigationIndex {
+  // The navigation positions of a set of infos, sorted by position, and in the order of processHighlights() among equal
+  // positions
+  private static final class Positions {
+    private int[] offsets = new int[16];
+    private HighlightInfo[] infos = new HighlightInfo[16];
+    private int size;
+
+    private void add(final int offset, final HighlightInfo info) {
+      if (size == offsets.length) {
+        offsets = Arrays.copyOf(offsets, size * 2);
+        infos = Arrays.copyOf(infos, size * 2);
+      }
+
+      offsets[size] = offset;
+      infos[size++] = info;
+    }
+
+    // Adds the positions of `batch` before (or after) all of the positions of this
+    private void addAll(final Positions batch, final boolean isBefore) {
+      if (size + batch.size > offsets.length) {
+        offsets = Arrays.copyOf(offsets, Math.max(size * 2, size + batch.size));
+        infos = Arrays.copyOf(infos, offsets.length);
+      }
+
+      final int at = isBefore ? 0 : size;
+      if (isBefore) {
+        System.arraycopy(offsets, 0, offsets, batch.size, size);
+        System.arraycopy(infos, 0, infos, batch.size, size);
+      }
+
+      System.arraycopy(batch.offsets, 0, offsets, at, batch.size);
+      System.arraycopy(batch.infos, 0, infos, at, batch.size);
+      size += batch.size;
+    }
+
+    private void documentChanged(final DocumentEvent event) {
+      final int oldEnd = event.getOffset() + event.getOldLength();
+      final int shift = event.getNewLength() - event.getOldLength();
+      for (int i = firstFrom(event.getOffset()); i < size; ++i)
+        offsets[i] = offsets[i] < oldEnd ? event.getOffset() : offsets[i] + shift;
+    }
+
+    // Returns the index of the first position that is at or after `offset`
+    private int firstFrom(final int offset) {
+      int from = 0;
+      for (int to = size, mid; from < to;) {
+        mid = (from + to) / 2;
+        if (offsets[mid] < offset)
+          from = mid + 1;
+        else
+          to = mid;
+      }
+
+      return from;
+    }
+
+    // Returns the info nearest after (or before) `caretOffset`, or null if there is none
+    private HighlightInfo findNearest(final int caretOffset, final boolean isForward) {
+      if (!isForward)
+        return findLast(firstFrom(caretOffset));
+
+      for (int i = firstFrom(caretOffset + 1); i < size; ++i)
+        if (isValid(infos[i]))
+          return infos[i];
+
+      return null;
+    }
+
+    // Returns the info to go to from `caretOffset`: the nearest after (or before) it, or else the first (or last) of
+    // all, by way of wrapping around. Of equal positions, the first is taken. Infos that the daemon has removed since the
+    // index was built are skipped.
+    private HighlightInfo find(final int caretOffset, final boolean isForward) {
+      if (isForward) {
+        for (int i = firstFrom(caretOffset + 1); i < size; ++i)
+          if (isValid(infos[i]))
+            return infos[i];
+
+        for (int i = 0; i < size; ++i)
+          if (isValid(infos[i]))
+            return infos[i];
+      }
+      else {
+        final HighlightInfo info = findLast(firstFrom(caretOffset));
+        return info != null ? info : findLast(size);
+      }
+
+      return null;
+    }
+
+    // Returns the first valid info of those at the last position before `to` that has a valid info
+    private HighlightInfo findLast(final int to) {
+      int last = to - 1;
+      while (last >= 0 && !isValid(infos[last]))
+        --last;
+
+      if (last < 0)
+        return null;
+
+      int first = last;
+      for (int i = last - 1; i >= 0 && offsets[i] == offsets[last]; --i)
+        if (isValid(infos[i]))
+          first = i;
+
+      return infos[first];
+    }
+  }
+
+  private static final Map<Document,ErrorNavigationIndex> indexes = new HashMap<>();
+  private static final Set<Project> projects = new HashSet<>();
+  private static boolean isInitialized;
+
+  private static void init(final Project project) {
+    if (!isInitialized) {
+      isInitialized = true;
+      EditorFactory.getInstance().addEditorFactoryListener(new EditorFactoryListener() {
+        @Override
+        public void editorReleased(final EditorFactoryEvent event) {
+          final Document document = event.getEditor().getDocument();
+          for (final Editor other : EditorFactory.getInstance().getEditors(document))
+            if (other != event.getEditor())
+              return;
+
+          remove(document);
+        }
+      }, ApplicationManager.getApplication());
+    }
+
+    if (projects.add(project)) {
+      project.getMessageBus().connect(project).subscribe(DaemonCodeAnalyzer.DAEMON_EVENT_TOPIC, new DaemonCodeAnalyzer.DaemonListener() {
+        @Override
+        public void daemonFinished() {
+          invalidate(project);
+        }
+      });
+      Disposer.register(project, () -> {
+        invalidate(project);
+        projects.remove(project);
+      });
+    }
+  }
+
+  // Drops the indexes of the documents of `project`, so that they are rebuilt from the highlights on next use
+  static void invalidate(final Project project) {
+    indexes.values().removeIf(index -> {
+      if (index.project != project)
+        return false;
+
+      Disposer.dispose(index.disposable);
+      return true;
+    });
+  }
+
+  private static void remove(final Document document) {
+    final ErrorNavigationIndex index = indexes.remove(document);
+    if (index != null)
+      Disposer.dispose(index.disposable);
+  }
+
+  // Returns the index of the highlights of `document`, with a set of positions for each of `severities` (in ascending
+  // order), which is built if there is none for these severities
+  static ErrorNavigationIndex get(final Project project, final Document document, final SeverityRegistrar severityRegistrar, final List<HighlightSeverity> severities) {
+    init(project);
+    ErrorNavigationIndex index = indexes.get(document);
+    if (index != null && index.project == project && index.severities.equals(severities))
+      return index;
+
+    remove(document);
+    index = new ErrorNavigationIndex(project, document, severityRegistrar, severities);
+    indexes.put(document, index);
+    return index;
+  }
+
+  private static boolean isValid(final HighlightInfo info) {
+    final RangeHighlighterEx highlighter = info.getHighlighter();
+    return highlighter == null || highlighter.isValid();
+  }
+
+  private static final int MIN_WINDOW = 4096;
+
+  private final Project project;
+  private final Document document;
+  private final SeverityRegistrar severityRegistrar;
+  private final List<HighlightSeverity> severities;
+  // Per severity: the positions of the infos that are at least as severe, of those for which goto by severity is
+  // enabled [0], and of all [1]
+  private final Positions[][] positions;
+  // The range of the document of which the infos are in the index, by their start offsets, which begins and ends at the
+  // start of a line (or the end of the document), so that a position outside of it cannot be within it
+  private int coveredFrom = -1;
+  private int coveredTo = -1;
+  private int window;
+  private final Disposable disposable = Disposer.newDisposable();
+  private final DocumentListener documentListener = new DocumentListener() {
+    @Override
+    public void documentChanged(final DocumentEvent event) {
+      for (final Positions[] severityPositions : positions)
+        for (final Positions p : severityPositions)
+          p.documentChanged(event);
+
+      final int oldEnd = event.getOffset() + event.getOldLength();
+      final int shift = event.getNewLength() - event.getOldLength();
+      if (coveredFrom >= oldEnd)
+        coveredFrom += shift;
+      else if (coveredFrom > event.getOffset())
+        coveredFrom = event.getOffset();
+
+      if (coveredTo >= oldEnd)
+        coveredTo += shift;
+      else if (coveredTo > event.getOffset())
+        coveredTo = event.getOffset();
+    }
+  };
+  private final MarkupModelListener markupModelListener = new MarkupModelListener() {
+    @Override
+    public void afterAdded(@NotNull final RangeHighlighterEx highlighter) {
+      highlightChanged(highlighter);
+    }
+
+    @Override
+    public void beforeRemoved(@NotNull final RangeHighlighterEx highlighter) {
+      highlightChanged(highlighter);
+    }
+  };
+
+  private ErrorNavigationIndex(final Project project, final Document document, final SeverityRegistrar severityRegistrar, final List<HighlightSeverity> severities) {
+    this.project = project;
+    this.document = document;
+    this.severityRegistrar = severityRegistrar;
+    this.severities = severities;
+    this.positions = new Positions[severities.size()][];
+    clear();
+    document.addDocumentListener(documentListener, disposable);
+    final MarkupModel markupModel = DocumentMarkupModel.forDocument(document, project, true);
+    if (markupModel instanceof MarkupModelEx)
+      ((MarkupModelEx)markupModel).addMarkupModelListener(disposable, markupModelListener);
+  }
+
+  // Resets the covered range if an info of the severities is added to (or removed from) it, which is cheaper than
+  // inserting it into each of the positions, since the daemon adds many in a pass
+  private void highlightChanged(final RangeHighlighterEx highlighter) {
+    if (coveredFrom < 0 || highlighter.getStartOffset() < coveredFrom || highlighter.getStartOffset() > coveredTo)
+      return;
+
+    final HighlightInfo info = HighlightInfo.fromRangeHighlighter(highlighter);
+    if (info != null && severityRegistrar.compare(info.getSeverity(), severities.get(0)) >= 0)
+      coveredFrom = coveredTo = -1;
+  }
+
+  private void clear() {
+    for (int i = 0; i < positions.length; ++i)
+      positions[i] = new Positions[] {new Positions(), new Positions()};
+
+    coveredFrom = coveredTo = -1;
+    window = MIN_WINDOW;
+  }
+
+  // Adds the infos that start in [from, to) to the index, in one pass over the highlights of that range
+  private void cover(final int from, final int to) {
+    final int textLength = document.getTextLength();
+    final int[] order = new int[1];
+    final long[][] keys = new long[1][16];
+    final HighlightInfo[][] infos = new HighlightInfo[1][16];
+    DaemonCodeAnalyzerEx.processHighlights(document, project, severities.get(0), from, to, (info) -> {
+      // The highlights that overlap the range are processed, but only those that start in it are added, so that an
+      // info is not added twice. An info at the end of the document is added with the last range.
+      final int startOffset = info.getActualStartOffset();
+      if (startOffset < from || startOffset >= to && to != textLength)
+        return true;
+
+      if (order[0] == keys[0].length) {
+        keys[0] = Arrays.copyOf(keys[0], order[0] * 2);
+        infos[0] = Arrays.copyOf(infos[0], order[0] * 2);
+      }
+
+      // Sorted by position, and then by the order of processHighlights()
+      keys[0][order[0]] = (long)SelectNextErrorHandler.getNavigationPositionFor(info, document) << 32 | order[0];
+      infos[0][order[0]++] = info;
+      return true;
+    });
+
+    final Positions[][] batch = new Positions[severities.size()][];
+    for (int i = 0; i < batch.length; ++i)
+      batch[i] = new Positions[] {new Positions(), new Positions()};
+
+    final long[] sorted = Arrays.copyOf(keys[0], order[0]);
+    Arrays.sort(sorted);
+    for (final long key : sorted) {
+      final HighlightInfo info = infos[0][(int)key];
+      final int offset = (int)(key >>> 32);
+      final boolean isGotoBySeverityEnabled = SeverityRegistrarHack.isGotoBySeverityEnabled(info.getSeverity());
+      for (int i = 0; i < severities.size() && severityRegistrar.compare(info.getSeverity(), severities.get(i)) >= 0; ++i) {
+        if (isGotoBySeverityEnabled)
+          batch[i][0].add(offset, info);
+
+        batch[i][1].add(offset, info);
+      }
+    }
+
+    final boolean isBefore = from < coveredFrom;
+    for (int i = 0; i < batch.length; ++i)
+      for (int j = 0; j < 2; ++j)
+        positions[i][j].addAll(batch[i][j], isBefore);
+
+    coveredFrom = Math.min(coveredFrom, from);
+    coveredTo = Math.max(coveredTo, to);
+  }
+
+  private int getLineStart(final int offset) {
+    return offset >= document.getTextLength() ? document.getTextLength() : document.getLineStartOffset(document.getLineNumber(offset));
+  }
+
+  // Returns the start of the line after that of `offset`, or the end of the document if there is none
+  private int getNextLineStart(final int offset) {
+    if (offset >= document.getTextLength())
+      return document.getTextLength();
+
+    final int line = document.getLineNumber(offset) + 1;
+    return line < document.getLineCount() ? document.getLineStartOffset(line) : document.getTextLength();
+  }
+
+  // Returns the info to go to from `caretOffset`, from the most severe of the severities with any info, preferring the
+  // infos for which goto by severity is enabled
+  HighlightInfo find(final int caretOffset, final boolean isForward) {
+    final int textLength = document.getTextLength();
+    if (coveredFrom < 0 || caretOffset < coveredFrom || caretOffset > coveredTo) {
+      clear();
+      coveredFrom = coveredTo = getLineStart(caretOffset);
+      cover(coveredFrom, getNextLineStart(caretOffset));
+    }
+
+    // Of the infos in the range, the nearest after (or before) the caret of the most preferred kind is the info to go
+    // to, since an info outside of the range is further away, and is not preferred over it
+    while (coveredFrom > 0 || coveredTo < textLength) {
+      final HighlightInfo info = positions[positions.length - 1][0].findNearest(caretOffset, isForward);
+      if (info != null)
+        return info;
+
+      if (isForward ? coveredTo < textLength : coveredFrom == 0)
+        cover(coveredTo, getNextLineStart(coveredTo + window));
+      else
+        cover(coveredFrom <= window ? 0 : getLineStart(coveredFrom - window), coveredFrom);
+
+      window *= 2;
+    }
+
+    for (int i = positions.length - 1; i >= 0; --i) {
+      HighlightInfo info = positions[i][0].find(caretOffset, isForward);
+      if (info == null)
+        info = positions[i][1].find(caretOffset, isForward);
+
+      if (info != null)
+        return info;
+    }
+
+    return null;
+  }
+}
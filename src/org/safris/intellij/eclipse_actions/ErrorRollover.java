@@ -0,0 +1,95 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jetbrains.concurrency.CancellablePromise;
+
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.problems.WolfTheProblemSolver;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+// Finds the file that Select Next (or Previous) Error rolls over to when it passes the last (or first) error of a file:
+// the next (or previous) file in project view order that the platform's problem tracking has as a problem file. The
+// document and PSI of that file are loaded in the background ahead of time, so that rolling over is not held up by
+// them. Only accessed from the EDT.
+final class ErrorRollover {
+  private static VirtualFile prefetched;
+  private static CancellablePromise<?> promise;
+
+  static boolean isEnabled() {
+    return Registry.is("eclipse.actions.selecterror.rollover", false);
+  }
+
+  // Returns the problem file after (or before) `file`, wrapping around, or null if there is no other
+  static VirtualFile next(final Project project, final VirtualFile file, final boolean isForward) {
+    final List<VirtualFile> files = new ArrayList<>();
+    // Each problem file is passed to the condition, which is how they are listed
+    WolfTheProblemSolver.getInstance(project).hasProblemFilesBeneath(problemFile -> {
+      if (!problemFile.equals(file))
+        files.add(problemFile);
+
+      return false;
+    });
+
+    if (files.isEmpty())
+      return null;
+
+    files.sort(QuickFindRollover::compareProjectViewOrder);
+    // A file outside of the problem files goes to where it would be in project view order
+    int index = -Collections.binarySearch(files, file, QuickFindRollover::compareProjectViewOrder) - 1;
+    if (!isForward)
+      --index;
+
+    final int size = files.size();
+    return files.get((index % size + size) % size);
+  }
+
+  // Loads the document and PSI of the file that `file` would roll over to, in the background
+  static void prefetch(final Project project, final VirtualFile file, final boolean isForward) {
+    final VirtualFile next = next(project, file, isForward);
+    if (next == null || next.equals(prefetched))
+      return;
+
+    if (promise != null)
+      promise.cancel();
+
+    prefetched = next;
+    promise = ReadAction.nonBlocking(() -> {
+      if (!next.isValid() || FileUtilRt.isTooLarge(next.getLength()) || FileDocumentManager.getInstance().getDocument(next) == null)
+        return null;
+
+      final PsiFile psiFile = PsiManager.getInstance(project).findFile(next);
+      // Builds the tree of the file, which is what highlighting starts with when it is opened
+      return psiFile == null ? null : psiFile.getNode();
+    })
+      .expireWith(project)
+      .finishOnUiThread(ModalityState.defaultModalityState(), result -> promise = null)
+      .submit(AppExecutorUtil.getAppExecutorService());
+  }
+}
@@ -0,0 +1,173 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.intellij.find.EditorSearchSession;
+import com.intellij.find.FindManager;
+import com.intellij.find.FindModel;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.colors.EditorColors;
+import com.intellij.openapi.editor.event.CaretEvent;
+import com.intellij.openapi.editor.event.CaretListener;
+import com.intellij.openapi.editor.event.EditorFactoryEvent;
+import com.intellij.openapi.editor.event.EditorFactoryListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.Alarm;
+
+// Highlights the occurrences of the word at the caret, like Eclipse's "Mark Occurrences". The occurrences come from a
+// QuickFindIndex with the same search options as Quick Find, which QuickFindCache keeps aside until Quick Find Next on
+// the word takes it over, so that it is already built then. Of its matches, only the whole words are highlighted. The
+// index is built in the background after the caret settles, and only the occurrences near the visible area are
+// highlighted. Only accessed from the EDT.
+public final class MarkOccurrences implements StartupActivity.DumbAware {
+  private static final String PROPERTY = "eclipse.actions.markOccurrences";
+  private static final int DELAY = 250;
+  private static final Map<Editor,QuickFindHighlighter> highlighters = new HashMap<>();
+  private static Disposable disposable;
+  private static Alarm alarm;
+  // The index that is being built for the last caret position, which is canceled if the caret moves on to another word
+  private static QuickFindIndex pending;
+
+  static boolean isEnabled() {
+    return PropertiesComponent.getInstance().getBoolean(PROPERTY, false);
+  }
+
+  static void setEnabled(final boolean isEnabled) {
+    PropertiesComponent.getInstance().setValue(PROPERTY, isEnabled, false);
+    if (isEnabled)
+      install();
+    else
+      uninstall();
+  }
+
+  @Override
+  public void runActivity(@NotNull final Project project) {
+    ApplicationManager.getApplication().invokeLater(() -> {
+      if (isEnabled())
+        install();
+    });
+  }
+
+  private static void install() {
+    if (disposable != null)
+      return;
+
+    disposable = Disposer.newDisposable();
+    Disposer.register(ApplicationManager.getApplication(), disposable);
+    alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, disposable);
+    EditorFactory.getInstance().getEventMulticaster().addCaretListener(new CaretListener() {
+      @Override
+      public void caretPositionChanged(final CaretEvent event) {
+        final Editor editor = event.getEditor();
+        alarm.cancelAllRequests();
+        alarm.addRequest(() -> update(editor), DELAY);
+      }
+    }, disposable);
+    EditorFactory.getInstance().addEditorFactoryListener(new EditorFactoryListener() {
+      @Override
+      public void editorReleased(final EditorFactoryEvent event) {
+        final QuickFindHighlighter highlighter = highlighters.remove(event.getEditor());
+        if (highlighter != null)
+          highlighter.dispose();
+      }
+    }, disposable);
+  }
+
+  private static void uninstall() {
+    if (disposable == null)
+      return;
+
+    Disposer.dispose(disposable);
+    disposable = null;
+    alarm = null;
+    cancelPending(null);
+    QuickFindCache.releaseMarkIndex();
+
+    for (final QuickFindHighlighter highlighter : highlighters.values())
+      highlighter.dispose();
+
+    highlighters.clear();
+  }
+
+  private static void update(final Editor editor) {
+    final Project project = editor.getProject();
+    if (editor.isDisposed() || project == null || FileDocumentManager.getInstance().getFile(editor.getDocument()) == null)
+      return;
+
+    final String word = editor.getSelectionModel().hasSelection() ? null : getWordAtCaret(editor);
+    final QuickFindHighlighter highlighter = highlighters.computeIfAbsent(editor, k -> new QuickFindHighlighter(editor, EditorColors.IDENTIFIER_UNDER_CARET_ATTRIBUTES, false));
+    if (word == null) {
+      cancelPending(null);
+      highlighter.setIndex(null, false);
+      return;
+    }
+
+    // Same as the search options of QuickFindAction, so that the index is shared with it
+    final FindManager findManager = FindManager.getInstance(project);
+    final EditorSearchSession session = EditorSearchSession.get(editor);
+    final FindModel findModel = session != null ? session.getFindModel() : findManager.getFindInFileModel();
+    if (findModel.isRegularExpressions()) {
+      cancelPending(null);
+      highlighter.setIndex(null, false);
+      return;
+    }
+
+    final QuickFindIndex index = QuickFindCache.peek(editor.getDocument(), word, findManager, findModel);
+    cancelPending(index);
+    pending = index;
+    index.refreshInBackground(project, () -> {
+      if (pending == index)
+        pending = null;
+
+      if (highlighters.get(editor) == highlighter)
+        highlighter.setIndex(index, true);
+    });
+  }
+
+  private static void cancelPending(final QuickFindIndex index) {
+    if (pending != null && pending != index)
+      pending.cancel();
+
+    pending = null;
+  }
+
+  private static String getWordAtCaret(final Editor editor) {
+    final CharSequence charSequence = editor.getDocument().getImmutableCharSequence();
+    final int offset = editor.getCaretModel().getOffset();
+    int startOffset = offset;
+    while (startOffset > 0 && Character.isJavaIdentifierPart(charSequence.charAt(startOffset - 1)))
+      --startOffset;
+
+    int endOffset = offset;
+    while (endOffset < charSequence.length() && Character.isJavaIdentifierPart(charSequence.charAt(endOffset)))
+      ++endOffset;
+
+    return startOffset == endOffset ? null : charSequence.subSequence(startOffset, endOffset).toString();
+  }
+}
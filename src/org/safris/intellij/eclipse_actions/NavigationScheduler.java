@@ -0,0 +1,74 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.util.Alarm;
+
+// Coalesces the visual updates of navigation actions that are repeated in a burst, such as while their key is held
+// down. The first navigation of a burst is updated right away. Each repeat within the delay of the one before it moves
+// the caret as usual, but its scrolling, search preview, tooltip and such are deferred, and only those of the last
+// navigation in each editor are run, once the burst is over. Only accessed from the EDT.
+final class NavigationScheduler {
+  private static final Map<Editor,Runnable> pending = new LinkedHashMap<>();
+  private static Alarm alarm;
+  private static long lastTime;
+
+  private static int getDelay() {
+    return Registry.intValue("eclipse.actions.navigation.coalesce.delay", 100);
+  }
+
+  // Runs `update` for a navigation in `editor`, now or once the burst is over
+  static void schedule(final Editor editor, final Runnable update) {
+    final int delay = getDelay();
+    final long time = System.currentTimeMillis();
+    final boolean isRepeat = time - lastTime < delay;
+    lastTime = time;
+    if (delay <= 0 || !isRepeat && pending.isEmpty()) {
+      pending.remove(editor);
+      update.run();
+      return;
+    }
+
+    pending.put(editor, update);
+    if (alarm == null)
+      alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, ApplicationManager.getApplication());
+
+    alarm.cancelAllRequests();
+    alarm.addRequest(NavigationScheduler::flush, delay);
+  }
+
+  // Drops the deferred update of `editor`, which has been superseded
+  static void cancel(final Editor editor) {
+    pending.remove(editor);
+  }
+
+  private static void flush() {
+    final List<Map.Entry<Editor,Runnable>> entries = new ArrayList<>(pending.entrySet());
+    pending.clear();
+    for (final Map.Entry<Editor,Runnable> entry : entries)
+      if (!entry.getKey().isDisposed())
+        entry.getValue().run();
+  }
+}
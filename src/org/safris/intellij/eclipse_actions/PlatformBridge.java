@@ -0,0 +1,138 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.codeInsight.daemon.impl.SeverityRegistrar;
+import com.intellij.find.EditorSearchSession;
+import com.intellij.find.FindResult;
+import com.intellij.find.impl.livePreview.SearchResults;
+
+// Access to the non-public members of the platform that the actions rely on. Each group of members is resolved into
+// MethodHandles on first use (by way of a holder class), and not on class loading. If a member cannot be resolved, as
+// when it changes in another platform version, the public API is used instead.
+final class PlatformBridge {
+  private static final class SearchSessionHandles {
+    private static final MethodHandle getSearchResults;
+    private static final MethodHandle setCursor;
+    private static final MethodHandle updateSelection;
+    private static final MethodHandle notifyCursorMoved;
+    private static final boolean isAvailable;
+
+    static {
+      getSearchResults = findGetter(EditorSearchSession.class, "mySearchResults", MethodType.methodType(SearchResults.class, EditorSearchSession.class));
+      setCursor = findSetter(SearchResults.class, "myCursor", MethodType.methodType(void.class, SearchResults.class, FindResult.class));
+      updateSelection = findMethod(SearchResults.class, "updateSelection", MethodType.methodType(void.class, SearchResults.class, boolean.class, boolean.class, boolean.class), boolean.class, boolean.class, boolean.class);
+      notifyCursorMoved = findMethod(SearchResults.class, "notifyCursorMoved", MethodType.methodType(void.class, SearchResults.class));
+      isAvailable = getSearchResults != null && setCursor != null && updateSelection != null && notifyCursorMoved != null;
+    }
+  }
+
+  private static final class HighlightInfoHandles {
+    private static final MethodHandle getNavigationShift = findGetter(HighlightInfo.class, "navigationShift", MethodType.methodType(int.class, HighlightInfo.class));
+  }
+
+  private static final class SeverityRegistrarHandles {
+    private static final MethodHandle getSeveritiesCount = findMethod(SeverityRegistrar.class, "getSeveritiesCount", MethodType.methodType(int.class, SeverityRegistrar.class));
+  }
+
+  private static MethodHandle findGetter(final Class<?> cls, final String name, final MethodType type) {
+    try {
+      final Field field = cls.getDeclaredField(name);
+      field.setAccessible(true);
+      return MethodHandles.lookup().unreflectGetter(field).asType(type);
+    }
+    catch (final ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static MethodHandle findSetter(final Class<?> cls, final String name, final MethodType type) {
+    try {
+      final Field field = cls.getDeclaredField(name);
+      field.setAccessible(true);
+      return MethodHandles.lookup().unreflectSetter(field).asType(type);
+    }
+    catch (final ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static MethodHandle findMethod(final Class<?> cls, final String name, final MethodType type, final Class<?> ... parameterTypes) {
+    try {
+      final Method method = cls.getDeclaredMethod(name, parameterTypes);
+      method.setAccessible(true);
+      return MethodHandles.lookup().unreflect(method).asType(type);
+    }
+    catch (final ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  // Moves the cursor of the search session to `cursor`, so that the session shows it as the current match. Returns
+  // false if this is not possible on this platform, in which case the session is left as it is.
+  static boolean notifyCursorMoved(final EditorSearchSession session, final FindResult cursor) {
+    if (!SearchSessionHandles.isAvailable)
+      return false;
+
+    try {
+      final SearchResults searchResults = (SearchResults)SearchSessionHandles.getSearchResults.invokeExact(session);
+      SearchSessionHandles.setCursor.invokeExact(searchResults, cursor);
+      SearchSessionHandles.updateSelection.invokeExact(searchResults, true, false, true);
+      SearchSessionHandles.notifyCursorMoved.invokeExact(searchResults);
+      return true;
+    }
+    catch (final Throwable t) {
+      t.printStackTrace();
+      return false;
+    }
+  }
+
+  static int getSeveritiesCount(final SeverityRegistrar severityRegistrar) {
+    if (SeverityRegistrarHandles.getSeveritiesCount != null) {
+      try {
+        return (int)SeverityRegistrarHandles.getSeveritiesCount.invokeExact(severityRegistrar);
+      }
+      catch (final Throwable t) {
+        t.printStackTrace();
+      }
+    }
+
+    return severityRegistrar.getAllSeverities().size();
+  }
+
+  // Returns the shift of the navigation position of `info` past its start, or 1 (the default of HighlightInfo) if the
+  // shift is not accessible on this platform.
+  static int getNavigationShift(final HighlightInfo info) {
+    if (HighlightInfoHandles.getNavigationShift != null) {
+      try {
+        return (int)HighlightInfoHandles.getNavigationShift.invokeExact(info);
+      }
+      catch (final Throwable t) {
+        t.printStackTrace();
+      }
+    }
+
+    return 1;
+  }
+}
@@ -17,52 +17,30 @@
 package org.safris.intellij.eclipse_actions;
 
 import java.awt.KeyboardFocusManager;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
 
+import com.intellij.codeInsight.hint.HintManagerImpl;
 import com.intellij.find.EditorSearchSession;
 import com.intellij.find.FindManager;
 import com.intellij.find.FindModel;
 import com.intellij.find.FindResult;
 import com.intellij.find.SearchReplaceComponent;
-import com.intellij.find.impl.FindResultImpl;
-import com.intellij.find.impl.livePreview.SearchResults;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
-import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.ScrollType;
 import com.intellij.openapi.editor.SelectionModel;
-import com.intellij.openapi.editor.event.DocumentEvent;
-import com.intellij.openapi.editor.event.DocumentListener;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vfs.VirtualFile;
 
 abstract class QuickFindAction extends AnAction {
-  private static final FileDocumentManager fileDocumentManager = FileDocumentManager.getInstance();
-
-  private static final DocumentListener documentListener = new DocumentListener() {
-    @Override
-    public void documentChanged(final DocumentEvent event) {
-      // FIXME: Can be more specific here to have better performance.
-      isDocumentChanged = true;
-//      System.err.println("isDocumentChanged: true");
-    }
-  };
-
-  private static final FindResult NULL_RESULT = new FindResultImpl(Integer.MAX_VALUE, Integer.MAX_VALUE);
-  private static FindResult lastResult = NULL_RESULT;
-  private static Document lastDocument;
-  private static boolean isDocumentChanged = true;
-  private static int findResultIndex;
   private static String lastSearchString;
-  static final List<FindResult> findResults = new ArrayList<>();
 
   abstract boolean isForward();
-  abstract int getNextPrevious(int cursorOffset);
+  abstract int getNextPrevious(QuickFindIndex index, int cursorOffset);
 
   @Override
   public void actionPerformed(final AnActionEvent e) {
@@ -72,15 +50,6 @@ abstract class QuickFindAction extends AnAction {
 
     final Editor editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
 
-    if (lastDocument != editor.getDocument()) {
-      if (lastDocument != null)
-        lastDocument.removeDocumentListener(documentListener);
-
-      lastDocument = editor.getDocument();
-      lastDocument.addDocumentListener(documentListener);
-      isDocumentChanged = true;
-    }
-
     FindManager findManager = null;
     EditorSearchSession session = EditorSearchSession.get(editor);
     if (session == null) {
@@ -123,20 +92,32 @@ abstract class QuickFindAction extends AnAction {
     final boolean isFindStringChanged = hasSearchString && isDiffFromPriorSearch(findModel, nextSearchString);
 //    System.err.println("actionPerformed(" + selectionModel.getSelectedText() + ", " + selectionModel.getSelectionEnd() + "): \"" + currentSelection + "\"");
 
-    if (isDocumentChanged || isFindStringChanged) {
-      isDocumentChanged = false;
-
+    if (isFindStringChanged) {
 //      System.err.println("isNewSearch \"" + lastSearchString + "\" -> \"" + nextSearchString + "\"");
-      if (isFindStringChanged) {
-        lastSearchString = nextSearchString;
-        shouldSetTextInField = true;
-      }
+      lastSearchString = nextSearchString;
+      shouldSetTextInField = true;
+      isRegularExpression = findModel.isRegularExpressions();
+      isCaseSensitive = findModel.isCaseSensitive();
+      isWholeWordsOnly = findModel.isWholeWordsOnly();
+    }
 
-      if (findManager == null)
-        findManager = FindManager.getInstance(project);
+    if (findManager == null)
+      findManager = FindManager.getInstance(project);
 
-      refreshFindResults(editor, findManager, findModel);
-    }
+    // This is a workaround for what seems to be a bug in IntelliJ's search mechanism.
+    // When the search string is changed, not matter what, it will always be reported as `isLast` and `hasMatches() == false`,
+    // regardless of whether it is last or if there are any matches. Therefore, when the search string changes, I do
+    // a manual search myself to see if there is a match following the selection end. If there isn't, set `isChangedAndLast` to true,
+    // so that the annoying "not found" tooltip is skipped.
+    final QuickFindIndex index = QuickFindCache.get(editor.getDocument(), lastSearchString, findManager, findModel);
+    final boolean isIndexed = index.refresh(project);
+    final VirtualFile file = FileDocumentManager.getInstance().getFile(editor.getDocument());
+    final boolean isRollover = file != null && QuickFindRollover.isEnabled();
+    if (isRollover)
+      QuickFindRollover.prefetch(project, file, lastSearchString, findManager, findModel);
+
+    FindResult lastResult = index.lastResult;
+    int findResultIndex = index.findResultIndex;
 
     final int caretOffset = editor.getCaretModel().getOffset();
     boolean isCaretAtEnd = caretOffset == selectionModel.getSelectionEnd();
@@ -146,42 +127,103 @@ abstract class QuickFindAction extends AnAction {
     final boolean hasBeenMoved = caretOffset < lastResult.getStartOffset() || lastResult.getEndOffset() < caretOffset;
 //    System.err.println("hasBeenMoved: " + hasBeenMoved);
 
-    if (hasBeenMoved) {
-      findResultIndex = getNextPrevious(cursorOffset);
-    }
-    else if (isForward) {
-      if (!hasSearchString && caretOffset == lastResult.getStartOffset())
-        isCaretAtEnd = true;
-      else if (++findResultIndex == findResults.size()) {
-        findResultIndex = 0;
+    final boolean isMoving;
+    boolean isWrapped = false;
+    if (!isIndexed) {
+      // The index is being built in the background, so search outward from the cursor for the nearest match instead
+      FindResult nextResult = null;
+      if (hasBeenMoved)
+        nextResult = index.findNearest(cursorOffset, isForward);
+      else if (isForward) {
+        if (!hasSearchString && caretOffset == lastResult.getStartOffset()) {
+          isCaretAtEnd = true;
+          nextResult = lastResult;
+        }
+        else {
+          nextResult = index.findNearest(lastResult.getEndOffset(), true);
+          isWrapped = nextResult != null && nextResult.getStartOffset() < lastResult.getEndOffset();
+        }
+      }
+      else {
+        if (!hasSearchString && caretOffset == lastResult.getEndOffset()) {
+          isCaretAtEnd = false;
+          nextResult = lastResult;
+        }
+        else {
+          nextResult = index.findNearest(lastResult.getStartOffset(), false);
+          isWrapped = nextResult != null && nextResult.getEndOffset() > lastResult.getStartOffset();
+        }
       }
+
+      isMoving = nextResult != null;
+      if (isMoving)
+        lastResult = nextResult;
+      else if (index.isTruncated())
+        HintManagerImpl.getInstanceImpl().showInformationHint(editor, "Search timed out");
     }
     else {
-      if (!hasSearchString && caretOffset == lastResult.getEndOffset())
-        isCaretAtEnd = false;
-      else if (--findResultIndex == -1) {
-        findResultIndex = findResults.size() - 1;
+      if (hasBeenMoved) {
+        findResultIndex = getNextPrevious(index, cursorOffset);
       }
+      else if (isForward) {
+        if (!hasSearchString && caretOffset == lastResult.getStartOffset())
+          isCaretAtEnd = true;
+        else if (++findResultIndex == index.size()) {
+          findResultIndex = 0;
+          isWrapped = true;
+        }
+      }
+      else {
+        if (!hasSearchString && caretOffset == lastResult.getEndOffset())
+          isCaretAtEnd = false;
+        else if (--findResultIndex == -1) {
+          findResultIndex = index.size() - 1;
+          isWrapped = true;
+        }
+      }
+
+//      if (findResultIndex >= index.size())
+//        return;
+
+      isMoving = findResultIndex < index.size();
+      if (isMoving)
+        lastResult = index.get(findResultIndex);
     }
 
-//    if (findResultIndex >= findResults.size())
-//      return;
+    if (isWrapped && isRollover && rollOver(project, file, isForward, isCaretAtEnd, findManager)) {
+      NavigationScheduler.cancel(editor);
+      QuickFindHighlighter.hide(editor);
+      return;
+    }
 
-    final boolean isMoving = findResultIndex < findResults.size();
     if (isMoving) {
-      lastResult = findResults.get(findResultIndex);
-
       // final boolean isLast = isForward ? caretOffset > lastResult.getStartOffset() : caretOffset < lastResult.getEndOffset();
 
       editor.getCaretModel().moveToOffset(isCaretAtEnd ? lastResult.getEndOffset() : lastResult.getStartOffset());
       selectionModel.setSelection(lastResult.getStartOffset(), lastResult.getEndOffset());
     }
 
+    index.lastResult = lastResult;
+    index.findResultIndex = findResultIndex;
     if (shouldSetTextInField)
       session.setTextInField(lastSearchString);
 
-    if (isMoving)
-      notifyCursorMoved(session, lastResult);
+    // The caret and selection are moved right away, because the next repeat goes on from them, but the status bar and
+    // the preview of the search session are only updated for the last match of a burst
+    final EditorSearchSession finalSession = session;
+    final FindResult cursor = lastResult;
+    final int position = !isIndexed ? -1 : isMoving ? findResultIndex : 0;
+    NavigationScheduler.schedule(editor, () -> {
+      QuickFindStatusBarWidget.update(project, finalSession, position, index.size());
+      final boolean isPreviewSkipped = isIndexed && isPreviewSkipped(index);
+      if (isMoving && !isPreviewSkipped)
+        PlatformBridge.notifyCursorMoved(finalSession, cursor);
+
+      if (isPreviewSkipped)
+        QuickFindHighlighter.show(editor, index);
+      else
+        QuickFindHighlighter.hide(editor);
+    });
 
 //    else {
 //      go(session, isLast);
@@ -194,6 +236,59 @@ abstract class QuickFindAction extends AnAction {
 //      invokeAction(e, actionId);
   }
 
+  // Moves on to the first (or last) match in the next (or previous) file with a match, instead of wrapping around within
+  // the current document. Returns false if there is no such file, or if it is not known yet.
+  private static boolean rollOver(final Project project, final VirtualFile file, final boolean isForward, final boolean isCaretAtEnd, final FindManager findManager) {
+    final VirtualFile nextFile = QuickFindRollover.next(file, isForward);
+    if (nextFile == null)
+      return false;
+
+    final Editor editor = FileEditorManager.getInstance(project).openTextEditor(new OpenFileDescriptor(project, nextFile), true);
+    if (editor == null)
+      return false;
+
+    EditorSearchSession session = EditorSearchSession.get(editor);
+    if (session == null)
+      session = EditorSearchSession.start(editor, findManager.getFindInFileModel(), project);
+
+    final FindModel findModel = session.getFindModel();
+    final QuickFindIndex index = QuickFindCache.get(editor.getDocument(), lastSearchString, findManager, findModel);
+    final boolean isIndexed = index.refresh(project);
+    final FindResult findResult;
+    if (isIndexed) {
+      findResult = index.size() == 0 ? null : index.get(index.findResultIndex = isForward ? 0 : index.size() - 1);
+    }
+    else {
+      findResult = index.findNearest(isForward ? 0 : editor.getDocument().getTextLength(), isForward);
+    }
+
+    session.setTextInField(lastSearchString);
+    QuickFindRollover.prefetch(project, nextFile, lastSearchString, findManager, findModel);
+    QuickFindStatusBarWidget.update(project, session, !isIndexed ? -1 : findResult == null ? 0 : index.findResultIndex, index.size());
+    if (findResult == null)
+      return true;
+
+    editor.getCaretModel().moveToOffset(isCaretAtEnd ? findResult.getEndOffset() : findResult.getStartOffset());
+    editor.getSelectionModel().setSelection(findResult.getStartOffset(), findResult.getEndOffset());
+    editor.getScrollingModel().scrollToCaret(ScrollType.CENTER);
+    index.lastResult = findResult;
+    if (isIndexed && isPreviewSkipped(index))
+      QuickFindHighlighter.show(editor, index);
+    else
+      PlatformBridge.notifyCursorMoved(session, findResult);
+
+    return true;
+  }
+
+  // Returns whether the index has more matches than the threshold past which the cursor of the search session is not
+  // moved, because the platform's update of its highlights and match count costs more than the search itself. The
+  // position of the match is still shown by QuickFindStatusBarWidget, and the matches near the visible area are
+  // highlighted by QuickFindHighlighter.
+  private static boolean isPreviewSkipped(final QuickFindIndex index) {
+    final int threshold = Registry.intValue("eclipse.actions.quickfind.preview.threshold", -1);
+    return threshold >= 0 && index.size() > threshold;
+  }
+
   private static boolean isCaseSensitive;
   private static boolean isRegularExpression;
   private static boolean isWholeWordsOnly;
@@ -221,71 +316,6 @@ abstract class QuickFindAction extends AnAction {
     return false;
   }
 
-  private static void refreshFindResults(final Editor editor, final FindManager findManager, final FindModel origFindModel) {
-    final FindModel findModel = new FindModel();
-    findModel.copyFrom(origFindModel);
-    findModel.setStringToFind(lastSearchString);
-
-    // This is a workaround for what seems to be a bug in IntelliJ's search mechanism.
-    // When the search string is changed, not matter what, it will always be reported as `isLast` and `hasMatches() == false`,
-    // regardless of whether it is last or if there are any matches. Therefore, when the search string changes, I do
-    // a manual search myself to see if there is a match following the selection end. If there isn't, set `isChangedAndLast` to true,
-    // so that the annoying "not found" tooltip is skipped.
-    final Document document = editor.getDocument();
-    final VirtualFile virtualFile = fileDocumentManager.getFile(document);
-    final CharSequence charSequence = document.getImmutableCharSequence();
-    int lastEndOffset = 0;
-    findResults.clear();
-    do {
-      final FindResult findResult = findManager.findString(charSequence, lastEndOffset, findModel, virtualFile);
-//      System.err.println("findResult \"" + findModel.getStringToFind() + "\": " + findResult);
-      if (findResult.getEndOffset() == 0)
-        break;
-
-      findResults.add(findResult);
-      lastEndOffset = findResult.getEndOffset();
-    }
-    while (true);
-
-    lastResult = NULL_RESULT;
-    isRegularExpression = findModel.isRegularExpressions();
-    isCaseSensitive = findModel.isCaseSensitive();
-    isWholeWordsOnly = findModel.isWholeWordsOnly();
-  }
-
-  private static final Field mySearchResultsField;
-  private static final Field myCursorField;
-  private static final Method updateSelectionMethod;
-  private static final Method notifyCursorMovedMethod;
-
-  static {
-    try {
-      mySearchResultsField = EditorSearchSession.class.getDeclaredField("mySearchResults");
-      mySearchResultsField.setAccessible(true);
-      myCursorField = SearchResults.class.getDeclaredField("myCursor");
-      myCursorField.setAccessible(true);
-      updateSelectionMethod = SearchResults.class.getDeclaredMethod("updateSelection", boolean.class, boolean.class, boolean.class);
-      updateSelectionMethod.setAccessible(true);
-      notifyCursorMovedMethod = SearchResults.class.getDeclaredMethod("notifyCursorMoved");
-      notifyCursorMovedMethod.setAccessible(true);
-    }
-    catch (final NoSuchFieldException | NoSuchMethodException e) {
-      throw new ExceptionInInitializerError(e);
-    }
-  }
-
-  private void notifyCursorMoved(final EditorSearchSession session, final FindResult cursor) {
-    try {
-      final SearchResults searchResults = (SearchResults)mySearchResultsField.get(session);
-      myCursorField.set(searchResults, cursor);
-      updateSelectionMethod.invoke(searchResults, Boolean.TRUE, Boolean.FALSE, Boolean.TRUE);
-      notifyCursorMovedMethod.invoke(searchResults);
-    }
-    catch (final Exception e) {
-      e.printStackTrace();
-    }
-  }
-
   private void invokeActionViaSession(final EditorSearchSession session, final boolean isLast) {
 //    System.err.println("XXX: " + session.isSearchInProgress());
     invokeActionViaSession(session);
@@ -0,0 +1,97 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.intellij.codeInsight.hint.HintManagerImpl;
+import com.intellij.find.FindResult;
+import com.intellij.openapi.editor.Caret;
+import com.intellij.openapi.editor.CaretModel;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.ScrollType;
+import com.intellij.openapi.project.Project;
+
+// Adds a caret on the next (or previous) match of the selected text, past the last (or before the first) caret, wrapping
+// around the document, and skipping the matches that already have a caret.
+abstract class QuickFindAddOccurrenceAction extends QuickFindCaretAction {
+  abstract boolean isForward();
+
+  @Override
+  void actionPerformed(final Project project, final Editor editor, final QuickFindIndex index) {
+    final CaretModel caretModel = editor.getCaretModel();
+    if (caretModel.getCaretCount() >= caretModel.getMaxCaretCount())
+      return;
+
+    final Set<Integer> selectionStarts = new HashSet<>();
+    final List<Caret> carets = caretModel.getAllCarets();
+    for (final Caret caret : carets)
+      selectionStarts.add(caret.getSelectionStart());
+
+    final boolean isForward = isForward();
+    final Caret caret = isForward ? carets.get(carets.size() - 1) : carets.get(0);
+    final int startOffset;
+    final int endOffset;
+    if (index.refresh(project)) {
+      final int size = index.size();
+      if (size == 0)
+        return;
+
+      int i = index.firstStartingAfter((isForward ? caret.getSelectionEnd() : caret.getSelectionStart()) - 1);
+      if (!isForward)
+        --i;
+
+      int attempts = 0;
+      for (i = (i + size) % size; attempts < size && selectionStarts.contains(index.getStartOffset(i)); ++attempts)
+        i = (i + (isForward ? 1 : size - 1)) % size;
+
+      if (attempts == size)
+        return;
+
+      startOffset = index.getStartOffset(i);
+      endOffset = index.getEndOffset(i);
+    }
+    else {
+      // The index is being built in the background, so search outward from the caret instead
+      FindResult findResult = index.findNearest(isForward ? caret.getSelectionEnd() : caret.getSelectionStart(), isForward);
+      for (int attempts = 0; findResult != null && selectionStarts.contains(findResult.getStartOffset()); ++attempts) {
+        if (attempts == carets.size())
+          return;
+
+        findResult = index.findNearest(isForward ? findResult.getEndOffset() : findResult.getStartOffset(), isForward);
+      }
+
+      if (findResult == null) {
+        if (index.isTruncated())
+          HintManagerImpl.getInstanceImpl().showInformationHint(editor, "Search timed out");
+
+        return;
+      }
+
+      startOffset = findResult.getStartOffset();
+      endOffset = findResult.getEndOffset();
+    }
+
+    final Caret added = caretModel.addCaret(editor.offsetToLogicalPosition(endOffset), true);
+    if (added != null) {
+      added.setSelection(startOffset, endOffset);
+      editor.getScrollingModel().scrollToCaret(ScrollType.MAKE_VISIBLE);
+    }
+  }
+}
@@ -0,0 +1,267 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.intellij.find.FindManager;
+import com.intellij.find.FindModel;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.editor.event.EditorFactoryEvent;
+import com.intellij.openapi.editor.event.EditorFactoryListener;
+import com.intellij.openapi.util.registry.Registry;
+
+// LRU cache of QuickFindIndex entries, keyed by Document and by search key, along with the QuickFindWordIndex of each
+// Document, which counts toward the same budget of memory. Only accessed from the EDT.
+final class QuickFindCache {
+  private static final class CacheKey {
+    private final Document document;
+    private final QuickFindIndex.Key key;
+
+    private CacheKey(final Document document, final QuickFindIndex.Key key) {
+      this.document = document;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj == this)
+        return true;
+
+      if (!(obj instanceof CacheKey))
+        return false;
+
+      final CacheKey that = (CacheKey)obj;
+      return document == that.document && key.equals(that.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(document) + key.hashCode();
+    }
+  }
+
+  private static final LinkedHashMap<CacheKey,QuickFindIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+  private static final Map<Document,DocumentListener> documentListeners = new HashMap<>();
+  // The word index of a document is shared by its single word searches, and kept for as long as it has any index, or
+  // until it is evicted
+  private static final LinkedHashMap<Document,QuickFindWordIndex> wordIndexes = new LinkedHashMap<>(16, 0.75f, true);
+  // The index of MarkOccurrences, which is kept out of the LRU until Quick Find searches for the same string, so that
+  // moving the caret does not evict the indexes of Quick Find
+  private static QuickFindIndex markIndex;
+  private static long clock;
+  private static boolean isInitialized;
+
+  private static void init() {
+    if (isInitialized)
+      return;
+
+    isInitialized = true;
+    EditorFactory.getInstance().addEditorFactoryListener(new EditorFactoryListener() {
+      @Override
+      public void editorReleased(final EditorFactoryEvent event) {
+        final Editor editor = event.getEditor();
+        final Document document = editor.getDocument();
+        for (final Editor other : EditorFactory.getInstance().getEditors(document))
+          if (other != editor)
+            return;
+
+        remove(document);
+      }
+    }, ApplicationManager.getApplication());
+  }
+
+  static QuickFindIndex get(final Document document, final String searchString, final FindManager findManager, final FindModel findModel) {
+    init();
+    final QuickFindIndex.Key key = new QuickFindIndex.Key(searchString, findModel);
+    final CacheKey cacheKey = new CacheKey(document, key);
+    QuickFindIndex index = indexes.get(cacheKey);
+    if (index == null && markIndex != null && markIndex.document == document && markIndex.key.equals(key)) {
+      index = markIndex;
+      markIndex = null;
+      indexes.put(cacheKey, index);
+    }
+    else if (index == null) {
+      index = new QuickFindIndex(document, key, findManager, findModel, searchString);
+      // The cached indexes of the same document serve as a stack of the strings typed so far: an extended string is
+      // refined from the longest of its prefixes, and a shortened one is most likely still cached
+      QuickFindIndex prefixIndex = null;
+      for (final QuickFindIndex cached : indexes.values())
+        if (index.isRefinementOf(cached) && (prefixIndex == null || cached.getStringToFind().length() > prefixIndex.getStringToFind().length()))
+          prefixIndex = cached;
+
+      if (prefixIndex != null)
+        index.refine(prefixIndex);
+
+      indexes.put(cacheKey, index);
+      documentListeners.computeIfAbsent(document, QuickFindCache::addDocumentListener);
+    }
+
+    index.lastAccess = ++clock;
+    evict(index);
+    return index;
+  }
+
+  // Returns the index for MarkOccurrences, without changing the order of the LRU: the cached index, if there is one, or
+  // else the index that is kept aside for it, which replaces the one kept aside before
+  static QuickFindIndex peek(final Document document, final String searchString, final FindManager findManager, final FindModel findModel) {
+    init();
+    final QuickFindIndex.Key key = new QuickFindIndex.Key(searchString, findModel);
+    for (final QuickFindIndex index : indexes.values())
+      if (index.document == document && index.key.equals(key))
+        return index;
+
+    if (markIndex != null && markIndex.document == document && markIndex.key.equals(key))
+      return markIndex;
+
+    releaseMarkIndex();
+    markIndex = new QuickFindIndex(document, key, findManager, findModel, searchString);
+    documentListeners.computeIfAbsent(document, QuickFindCache::addDocumentListener);
+    return markIndex;
+  }
+
+  static void releaseMarkIndex() {
+    if (markIndex == null)
+      return;
+
+    final QuickFindIndex index = markIndex;
+    markIndex = null;
+    index.dispose();
+    removeDocumentListenerIfUnused(index.document);
+  }
+
+  private static DocumentListener addDocumentListener(final Document document) {
+    final DocumentListener documentListener = new DocumentListener() {
+      @Override
+      public void documentChanged(final DocumentEvent event) {
+        final QuickFindWordIndex wordIndex = wordIndexes.get(document);
+        if (wordIndex != null)
+          wordIndex.documentChanged(event);
+
+        for (final QuickFindIndex index : indexes.values())
+          if (index.document == document)
+            index.documentChanged(event);
+
+        if (markIndex != null && markIndex.document == document)
+          markIndex.documentChanged(event);
+      }
+    };
+
+    document.addDocumentListener(documentListener);
+    return documentListener;
+  }
+
+  static QuickFindWordIndex getWordIndex(final Document document) {
+    final QuickFindWordIndex wordIndex = wordIndexes.get(document);
+    if (wordIndex != null)
+      wordIndex.lastAccess = ++clock;
+
+    return wordIndex;
+  }
+
+  // Caches the word index that `index` was built from
+  static void setWordIndex(final QuickFindIndex index, final QuickFindWordIndex wordIndex) {
+    if (!documentListeners.containsKey(index.document) || wordIndexes.containsKey(index.document))
+      return;
+
+    wordIndex.lastAccess = ++clock;
+    wordIndexes.put(index.document, wordIndex);
+    evict(index);
+  }
+
+  private static void evict(final QuickFindIndex current) {
+    final int maxEntries = Math.max(1, Registry.intValue("eclipse.actions.quickfind.cache.entries", 16));
+    final long maxBytes = Registry.intValue("eclipse.actions.quickfind.cache.kilobytes", 16384) * 1024L;
+    long bytes = 0;
+    for (final QuickFindIndex index : indexes.values())
+      bytes += index.getSizeInBytes();
+
+    for (final QuickFindWordIndex wordIndex : wordIndexes.values())
+      bytes += wordIndex.getSizeInBytes();
+
+    // The eldest entries are the least recently used, of either kind, but neither the entry in use, nor the word index
+    // of its document, is evicted. Only the QuickFindIndex entries count toward the maximum number of entries.
+    while (indexes.size() > maxEntries || bytes > maxBytes) {
+      QuickFindIndex eldest = null;
+      for (final QuickFindIndex index : indexes.values()) {
+        if (index != current) {
+          eldest = index;
+          break;
+        }
+      }
+
+      Map.Entry<Document,QuickFindWordIndex> eldestWords = null;
+      if (indexes.size() <= maxEntries) {
+        for (final Map.Entry<Document,QuickFindWordIndex> entry : wordIndexes.entrySet()) {
+          if (current == null || entry.getKey() != current.document) {
+            eldestWords = entry;
+            break;
+          }
+        }
+      }
+
+      if (eldestWords != null && (eldest == null || eldestWords.getValue().lastAccess < eldest.lastAccess)) {
+        wordIndexes.remove(eldestWords.getKey());
+        bytes -= eldestWords.getValue().getSizeInBytes();
+      }
+      else if (eldest != null) {
+        indexes.values().remove(eldest);
+        eldest.dispose();
+        bytes -= eldest.getSizeInBytes();
+        removeDocumentListenerIfUnused(eldest.document);
+      }
+      else {
+        break;
+      }
+    }
+  }
+
+  private static void remove(final Document document) {
+    indexes.values().removeIf(index -> {
+      if (index.document != document)
+        return false;
+
+      index.dispose();
+      return true;
+    });
+    if (markIndex != null && markIndex.document == document)
+      releaseMarkIndex();
+
+    removeDocumentListenerIfUnused(document);
+  }
+
+  private static void removeDocumentListenerIfUnused(final Document document) {
+    for (final QuickFindIndex index : indexes.values())
+      if (index.document == document)
+        return;
+
+    if (markIndex != null && markIndex.document == document)
+      return;
+
+    wordIndexes.remove(document);
+    final DocumentListener documentListener = documentListeners.remove(document);
+    if (documentListener != null)
+      document.removeDocumentListener(documentListener);
+  }
+}
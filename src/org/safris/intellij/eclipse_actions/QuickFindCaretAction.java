@@ -0,0 +1,56 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import com.intellij.find.EditorSearchSession;
+import com.intellij.find.FindManager;
+import com.intellij.find.FindModel;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+
+// Base of the multi-caret actions, which place carets on the matches of the selected text from the same cached
+// QuickFindIndex as Quick Find Next and Quick Find Previous.
+abstract class QuickFindCaretAction extends AnAction implements SelectAction {
+  abstract void actionPerformed(Project project, Editor editor, QuickFindIndex index);
+
+  @Override
+  public void actionPerformed(final AnActionEvent e) {
+    final Project project = e.getProject();
+    if (project == null)
+      return;
+
+    final Editor editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
+    if (editor == null)
+      return;
+
+    final String searchString = editor.getSelectionModel().getSelectedText();
+    if (searchString == null || searchString.isEmpty()) {
+      // Like in Eclipse, the first invocation only selects the word at the caret
+      selectWordAtCaret(project);
+      return;
+    }
+
+    // The options of an open search session are used, so that its index is shared with Quick Find
+    final FindManager findManager = FindManager.getInstance(project);
+    final EditorSearchSession session = EditorSearchSession.get(editor);
+    final FindModel findModel = session != null ? session.getFindModel() : findManager.getFindInFileModel();
+    actionPerformed(project, editor, QuickFindCache.get(editor.getDocument(), searchString, findManager, findModel));
+  }
+}
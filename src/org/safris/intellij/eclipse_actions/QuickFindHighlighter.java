@@ -0,0 +1,185 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.intellij.find.EditorSearchSession;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.LogicalPosition;
+import com.intellij.openapi.editor.colors.EditorColors;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.editor.event.EditorFactoryEvent;
+import com.intellij.openapi.editor.event.EditorFactoryListener;
+import com.intellij.openapi.editor.markup.HighlighterLayer;
+import com.intellij.openapi.editor.markup.HighlighterTargetArea;
+import com.intellij.openapi.editor.markup.MarkupModel;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.editor.markup.TextAttributesKey;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.Alarm;
+
+// Highlights the matches of a QuickFindIndex in and near the visible area of an editor only, for when there are so many
+// matches that highlighting all of them would stall the EDT, and for MarkOccurrences. The highlighters are updated as
+// the editor is scrolled or edited, keeping those of the matches that remain in range, so that their number does not
+// grow with the number of matches. Only accessed from the EDT.
+final class QuickFindHighlighter {
+  private static final int DELAY = 100;
+  private static final int MAX_HIGHLIGHTERS = 2000;
+  private static final Map<Editor,QuickFindHighlighter> highlighters = new HashMap<>();
+  private static boolean isInitialized;
+
+  private static void init() {
+    if (isInitialized)
+      return;
+
+    isInitialized = true;
+    EditorFactory.getInstance().addEditorFactoryListener(new EditorFactoryListener() {
+      @Override
+      public void editorReleased(final EditorFactoryEvent event) {
+        hide(event.getEditor());
+      }
+    }, ApplicationManager.getApplication());
+  }
+
+  static void show(final Editor editor, final QuickFindIndex index) {
+    init();
+    QuickFindHighlighter highlighter = highlighters.get(editor);
+    if (highlighter == null)
+      highlighters.put(editor, highlighter = new QuickFindHighlighter(editor, EditorColors.SEARCH_RESULT_ATTRIBUTES, true));
+
+    highlighter.setIndex(index, false);
+  }
+
+  static void hide(final Editor editor) {
+    final QuickFindHighlighter highlighter = highlighters.remove(editor);
+    if (highlighter != null)
+      highlighter.dispose();
+  }
+
+  private final Editor editor;
+  private final TextAttributesKey textAttributesKey;
+  // Whether the matches are those of the search session of the editor, and are hidden when it ends
+  private final boolean isSearch;
+  private final Disposable disposable = Disposer.newDisposable();
+  private final Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, disposable);
+  // The highlighters by the match they were created for, packed as by QuickFindSearcher.match()
+  private Map<Long,RangeHighlighter> rangeHighlighters = new HashMap<>();
+  private QuickFindIndex index;
+  // Whether only the matches that are whole words are highlighted, for MarkOccurrences, of which the index has the
+  // search options of Quick Find
+  private boolean isWholeWordsOnly;
+
+  QuickFindHighlighter(final Editor editor, final TextAttributesKey textAttributesKey, final boolean isSearch) {
+    this.editor = editor;
+    this.textAttributesKey = textAttributesKey;
+    this.isSearch = isSearch;
+    editor.getScrollingModel().addVisibleAreaListener(e -> scheduleUpdate(), disposable);
+    editor.getDocument().addDocumentListener(new DocumentListener() {
+      @Override
+      public void documentChanged(final DocumentEvent event) {
+        scheduleUpdate();
+      }
+    }, disposable);
+  }
+
+  void setIndex(final QuickFindIndex index, final boolean isWholeWordsOnly) {
+    this.index = index;
+    this.isWholeWordsOnly = isWholeWordsOnly;
+    update();
+  }
+
+  private void scheduleUpdate() {
+    alarm.cancelAllRequests();
+    alarm.addRequest(this::update, DELAY);
+  }
+
+  private void update() {
+    // The highlighting of a search ends along with its session, and any highlighting ends when the index is no longer
+    // maintained
+    if (editor.isDisposed() || index == null || !index.isValid() || isSearch && EditorSearchSession.get(editor) == null) {
+      if (isSearch)
+        hide(editor);
+      else
+        clear();
+
+      return;
+    }
+
+    // A screen above and below the visible area is included, so that a short scroll does not show matches without
+    // highlighting before the update
+    final Rectangle visibleArea = editor.getScrollingModel().getVisibleArea();
+    final int from = editor.logicalPositionToOffset(new LogicalPosition(editor.xyToLogicalPosition(new Point(0, Math.max(0, visibleArea.y - visibleArea.height))).line, 0));
+    final int to = editor.logicalPositionToOffset(new LogicalPosition(editor.xyToLogicalPosition(new Point(0, visibleArea.y + visibleArea.height * 2)).line + 1, 0));
+
+    final CharSequence charSequence = editor.getDocument().getImmutableCharSequence();
+    final MarkupModel markupModel = editor.getMarkupModel();
+    final Map<Long,RangeHighlighter> previous = rangeHighlighters;
+    rangeHighlighters = new HashMap<>();
+    int i = index.firstStartingAfter(from);
+    if (i > 0 && index.getEndOffset(i - 1) > from)
+      --i;
+
+    for (final int size = index.size(); i < size && index.getStartOffset(i) < to && rangeHighlighters.size() < MAX_HIGHLIGHTERS; ++i) {
+      final int startOffset = index.getStartOffset(i);
+      final int endOffset = index.getEndOffset(i);
+      if (isWholeWordsOnly && !isWholeWord(charSequence, startOffset, endOffset))
+        continue;
+
+      final Long match = QuickFindSearcher.match(startOffset, endOffset);
+      RangeHighlighter rangeHighlighter = previous.remove(match);
+      // A highlighter moves with the edits of the document, so it is kept only if it is still where the match is
+      if (rangeHighlighter == null || !rangeHighlighter.isValid() || rangeHighlighter.getStartOffset() != startOffset || rangeHighlighter.getEndOffset() != endOffset) {
+        if (rangeHighlighter != null)
+          markupModel.removeHighlighter(rangeHighlighter);
+
+        rangeHighlighter = markupModel.addRangeHighlighter(textAttributesKey, startOffset, endOffset, HighlighterLayer.SELECTION - 1, HighlighterTargetArea.EXACT_RANGE);
+      }
+
+      rangeHighlighters.put(match, rangeHighlighter);
+    }
+
+    for (final RangeHighlighter rangeHighlighter : previous.values())
+      markupModel.removeHighlighter(rangeHighlighter);
+  }
+
+  // The word at the caret is of identifier characters (as by MarkOccurrences), so a match of it is a whole word if it is
+  // not within a longer identifier
+  private static boolean isWholeWord(final CharSequence charSequence, final int startOffset, final int endOffset) {
+    return (startOffset == 0 || !Character.isJavaIdentifierPart(charSequence.charAt(startOffset - 1))) && (endOffset == charSequence.length() || !Character.isJavaIdentifierPart(charSequence.charAt(endOffset)));
+  }
+
+  private void clear() {
+    if (!editor.isDisposed())
+      for (final RangeHighlighter rangeHighlighter : rangeHighlighters.values())
+        editor.getMarkupModel().removeHighlighter(rangeHighlighter);
+
+    rangeHighlighters.clear();
+  }
+
+  void dispose() {
+    Disposer.dispose(disposable);
+    clear();
+  }
+}
@@ -0,0 +1,491 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.jetbrains.concurrency.CancellablePromise;
+
+import com.intellij.find.FindManager;
+import com.intellij.find.FindModel;
+import com.intellij.find.FindResult;
+import com.intellij.find.impl.FindResultImpl;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+final class QuickFindIndex {
+  static final FindResult NULL_RESULT = new FindResultImpl(Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+  static final class Key {
+    private final String searchString;
+    private final boolean isCaseSensitive;
+    private final boolean isRegularExpression;
+    private final boolean isWholeWordsOnly;
+    private final FindModel.SearchContext searchContext;
+    private final int hashCode;
+
+    Key(final String searchString, final FindModel findModel) {
+      this.isCaseSensitive = findModel.isCaseSensitive();
+      this.isRegularExpression = findModel.isRegularExpressions();
+      this.isWholeWordsOnly = findModel.isWholeWordsOnly();
+      this.searchContext = findModel.getSearchContext();
+      // Case insensitive searches for "Foo" and "foo" have the same results, so they share the same key
+      this.searchString = isCaseSensitive ? searchString : searchString.toLowerCase();
+      this.hashCode = Objects.hash(this.searchString, isCaseSensitive, isRegularExpression, isWholeWordsOnly, searchContext);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj == this)
+        return true;
+
+      if (!(obj instanceof Key))
+        return false;
+
+      final Key that = (Key)obj;
+      return isCaseSensitive == that.isCaseSensitive && isRegularExpression == that.isRegularExpression && isWholeWordsOnly == that.isWholeWordsOnly && searchContext == that.searchContext && searchString.equals(that.searchString);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private static final class Scan {
+    private final long modificationStamp;
+    private final int[] offsets;
+    private final QuickFindWordIndex wordIndex;
+
+    private Scan(final long modificationStamp, final int[] offsets, final QuickFindWordIndex wordIndex) {
+      this.modificationStamp = modificationStamp;
+      this.offsets = offsets;
+      this.wordIndex = wordIndex;
+    }
+  }
+
+  final Document document;
+  final Key key;
+  private final QuickFindSearcher searcher;
+  // Whether this is a whole word search for a single word, of which the results come from the QuickFindWordIndex
+  private final boolean isWordSearch;
+  // Start and end offsets of the results, packed in pairs, so that no FindResult is held per match
+  private int[] offsets = new int[0];
+  private int size;
+  private boolean isValid;
+  private CancellablePromise<Scan> promise;
+  private Runnable onReady;
+  // Whether the last search of findNearest() ran out of its budget, in which case its null result is not "no match"
+  private boolean isTruncated;
+
+  FindResult lastResult = NULL_RESULT;
+  int findResultIndex;
+  // The last access by QuickFindCache, by which it is evicted along with the cached QuickFindWordIndex entries
+  long lastAccess;
+
+  QuickFindIndex(final Document document, final Key key, final FindManager findManager, final FindModel origFindModel, final String searchString) {
+    this.document = document;
+    this.key = key;
+    final FindModel findModel = new FindModel();
+    findModel.copyFrom(origFindModel);
+    findModel.setStringToFind(searchString);
+    this.searcher = new QuickFindSearcher(findManager, findModel, FileDocumentManager.getInstance().getFile(document));
+    this.isWordSearch = !findModel.isRegularExpressions() && findModel.getSearchContext() == FindModel.SearchContext.ANY && findModel.isWholeWordsOnly() && QuickFindWordIndex.isWord(searchString);
+  }
+
+  int size() {
+    return size;
+  }
+
+  int getStartOffset(final int index) {
+    return offsets[index << 1];
+  }
+
+  int getEndOffset(final int index) {
+    return offsets[(index << 1) + 1];
+  }
+
+  FindResult get(final int index) {
+    return new FindResultImpl(getStartOffset(index), getEndOffset(index));
+  }
+
+  boolean isValid() {
+    return isValid;
+  }
+
+  long getSizeInBytes() {
+    return 64 + offsets.length * 4L;
+  }
+
+  private void add(final int index, final int startOffset, final int endOffset) {
+    final int i = index << 1;
+    final int length = size << 1;
+    if (length == offsets.length)
+      offsets = Arrays.copyOf(offsets, Math.max(32, length * 2));
+
+    if (i < length)
+      System.arraycopy(offsets, i, offsets, i + 2, length - i);
+
+    offsets[i] = startOffset;
+    offsets[i + 1] = endOffset;
+    ++size;
+  }
+
+  private void remove(final int from, final int to) {
+    System.arraycopy(offsets, to << 1, offsets, from << 1, (size - to) << 1);
+    size -= to - from;
+  }
+
+  // Builds the index, and returns true if it is ready. Documents larger than the lazy threshold are instead indexed in a
+  // background read action, in which case false is returned and navigation must go through findNearest() until ready.
+  // So is a document of which the scan with a regular expression runs out of its budget on the EDT, so that an index
+  // is never built from part of the matches. A single word search is a lookup, and is always ready once the document
+  // has a word index.
+  boolean refresh(final Project project) {
+    if (isValid)
+      return true;
+
+    final QuickFindWordIndex wordIndex = isWordSearch ? QuickFindCache.getWordIndex(document) : null;
+    if (wordIndex != null || !isLazy() && promise == null) {
+      try {
+        final Scan scan = scan(document.getModificationStamp(), document.getImmutableCharSequence(), wordIndex);
+        stop();
+        setScan(scan);
+        lastResult = NULL_RESULT;
+        return true;
+      }
+      catch (final QuickFindRegexMatcher.BudgetExceededException e) {
+      }
+    }
+
+    if (promise == null)
+      refreshInBackground(project);
+
+    return false;
+  }
+
+  // Builds the index right away, for actions that need all of the results at once. Documents larger than the lazy
+  // threshold are indexed under a modal progress, and false is returned if it is canceled.
+  boolean refreshNow(final Project project) {
+    if (isValid || !isLazy() || isWordSearch && QuickFindCache.getWordIndex(document) != null)
+      return refresh(project);
+
+    stop();
+    try {
+      setScan(ProgressManager.getInstance().runProcessWithProgressSynchronously(() -> ReadAction.compute(() -> scan(document.getModificationStamp(), document.getImmutableCharSequence(), null)), "Finding Occurrences of \"" + searcher.getStringToFind() + "\"", true, project));
+      lastResult = NULL_RESULT;
+      return true;
+    }
+    catch (final ProcessCanceledException e) {
+      return false;
+    }
+  }
+
+  // Finds the results in `charSequence`. A single word search takes them from `wordIndex`, which is built from
+  // `charSequence` if null.
+  private Scan scan(final long modificationStamp, final CharSequence charSequence, final QuickFindWordIndex wordIndex) {
+    if (!isWordSearch)
+      return new Scan(modificationStamp, searcher.findAll(charSequence), null);
+
+    final QuickFindWordIndex words = wordIndex != null ? wordIndex : QuickFindWordIndex.build(charSequence);
+    return new Scan(modificationStamp, words.find(charSequence, searcher.getStringToFind(), key.isCaseSensitive), words);
+  }
+
+  private void setScan(final Scan scan) {
+    if (scan.wordIndex != null)
+      QuickFindCache.setWordIndex(this, scan.wordIndex);
+
+    setOffsets(scan.offsets);
+  }
+
+  String getStringToFind() {
+    return searcher.getStringToFind();
+  }
+
+  // Returns whether the results of this index can be refined from those of `that`: both are literal searches with the
+  // same options, and the search string of this extends that of `that`, so that each match of this is at the start of a
+  // match of `that`, which does not hold for whole word searches. It also requires that the results of `that` are all
+  // occurrences of its string, and not only those that do not overlap, which is the case if its string has no border.
+  boolean isRefinementOf(final QuickFindIndex that) {
+    if (that.document != document || !that.isValid || !searcher.isLiteral() || !that.searcher.isLiteral() || key.isCaseSensitive != that.key.isCaseSensitive || key.isWholeWordsOnly || that.key.isWholeWordsOnly)
+      return false;
+
+    final String stringToFind = searcher.getStringToFind();
+    final String prefix = that.searcher.getStringToFind();
+    return prefix.length() < stringToFind.length() && QuickFindLiteralMatcher.startsWith(stringToFind, prefix, key.isCaseSensitive) && !QuickFindLiteralMatcher.hasBorder(prefix, key.isCaseSensitive);
+  }
+
+  // Builds the results from those of `that` (see isRefinementOf()), by checking only the start offsets of its matches
+  void refine(final QuickFindIndex that) {
+    final CharSequence charSequence = document.getImmutableCharSequence();
+    final int length = searcher.getStringToFind().length();
+    final int[] offsets = new int[that.size * 2];
+    int size = 0;
+    for (int i = 0, lastEndOffset = 0; i < that.size; ++i) {
+      final int startOffset = that.getStartOffset(i);
+      // The extended string can have a border, even if the prefix does not, so overlapping matches are skipped
+      if (startOffset >= lastEndOffset && searcher.matchesAt(charSequence, startOffset)) {
+        offsets[size++] = startOffset;
+        offsets[size++] = lastEndOffset = startOffset + length;
+      }
+    }
+
+    stop();
+    setOffsets(Arrays.copyOf(offsets, size));
+    lastResult = NULL_RESULT;
+  }
+
+  // Builds the index in a background read action, regardless of the size of the document, and runs `onReady` on the EDT
+  // once it is ready, which is right away if it already is. The build is stopped, and `onReady` is dropped, by cancel().
+  void refreshInBackground(final Project project, final Runnable onReady) {
+    if (isValid) {
+      onReady.run();
+      return;
+    }
+
+    this.onReady = onReady;
+    if (promise == null)
+      refreshInBackground(project);
+  }
+
+  private boolean isLazy() {
+    final int lazyThreshold = Registry.intValue("eclipse.actions.quickfind.lazy.threshold", 1048576);
+    return lazyThreshold >= 0 && document.getTextLength() >= lazyThreshold;
+  }
+
+  private void refreshInBackground(final Project project) {
+    promise = ReadAction.nonBlocking(() -> scan(document.getModificationStamp(), document.getImmutableCharSequence(), null))
+      .coalesceBy(this)
+      .expireWith(project)
+      .finishOnUiThread(ModalityState.defaultModalityState(), scan -> {
+        promise = null;
+        if (scan.modificationStamp != document.getModificationStamp()) {
+          refreshInBackground(project);
+          return;
+        }
+
+        setScan(scan);
+        // Navigation went by nearest match until now, so find where the last result lies in the index. If the index
+        // does not have it (matches of a self-overlapping string can be aligned differently), start afresh.
+        if (lastResult != NULL_RESULT) {
+          findResultIndex = firstStartingAfter(lastResult.getStartOffset()) - 1;
+          if (findResultIndex < 0 || getStartOffset(findResultIndex) != lastResult.getStartOffset() || getEndOffset(findResultIndex) != lastResult.getEndOffset())
+            lastResult = NULL_RESULT;
+        }
+      })
+      .submit(AppExecutorUtil.getAppExecutorService());
+  }
+
+  // Stops the build in the background, and drops its `onReady`
+  void cancel() {
+    onReady = null;
+    stop();
+  }
+
+  private void stop() {
+    if (promise != null) {
+      promise.cancel();
+      promise = null;
+    }
+  }
+
+  // Stops maintaining the index, when it is evicted from QuickFindCache, or set aside for MarkOccurrences and replaced
+  void dispose() {
+    cancel();
+    isValid = false;
+  }
+
+  private void setOffsets(final int[] offsets) {
+    this.offsets = offsets;
+    this.size = offsets.length / 2;
+    this.isValid = true;
+    if (onReady != null) {
+      final Runnable runnable = onReady;
+      onReady = null;
+      runnable.run();
+    }
+  }
+
+  // Finds the match nearest to `offset` in the given direction, wrapping around the end of the document, by searching
+  // outward from `offset` rather than from the start of the document. Returns null if there is no match, or if the
+  // search ran out of its budget, as told by isTruncated().
+  FindResult findNearest(final int offset, final boolean isForward) {
+    final CharSequence charSequence = document.getImmutableCharSequence();
+    long match;
+    isTruncated = false;
+    try {
+      if (isForward) {
+        match = searcher.find(charSequence, offset);
+        if (match == QuickFindSearcher.NOT_FOUND && offset > 0)
+          match = searcher.find(charSequence, 0);
+      }
+      else {
+        match = findLast(charSequence, 0, offset);
+        if (match == QuickFindSearcher.NOT_FOUND && offset < charSequence.length())
+          match = findLast(charSequence, offset, charSequence.length());
+      }
+    }
+    catch (final QuickFindRegexMatcher.BudgetExceededException e) {
+      isTruncated = true;
+      return null;
+    }
+
+    return match == QuickFindSearcher.NOT_FOUND ? null : new FindResultImpl(QuickFindSearcher.getStartOffset(match), QuickFindSearcher.getEndOffset(match));
+  }
+
+  // Finds the last match that ends at or before `to`, and starts at or after `from`, by searching windows that double in
+  // width backward from `to`. The match is the one that the index would have: a scan from the start of a window is in
+  // step with the scan of the whole document from the first match that is found at least the length of the search
+  // string (less one) past where the scan was, since no match that starts before that can reach it. The extent of a
+  // regular expression is unknown, so it is scanned from the start of the document, and not in a truncated window.
+  private long findLast(final CharSequence charSequence, final int from, final int to) {
+    final int maxLength = searcher.getMaxLength();
+    final CharSequence window = maxLength < 0 ? charSequence : searcher.getWindow(charSequence, to);
+    for (int width = Math.max(1024, maxLength * 2), start = to; start > 0; width *= 2) {
+      start = maxLength < 0 ? 0 : Math.max(0, to - width);
+      boolean isInStep = start == 0;
+      boolean isFound = false;
+      long last = QuickFindSearcher.NOT_FOUND;
+      int position = start;
+      for (long match = searcher.find(window, position); match != QuickFindSearcher.NOT_FOUND && QuickFindSearcher.getEndOffset(match) <= to; match = searcher.find(window, position)) {
+        isFound = true;
+        if (!isInStep && QuickFindSearcher.getStartOffset(match) >= position + maxLength - 1)
+          isInStep = true;
+
+        if (isInStep)
+          last = match;
+
+        position = QuickFindSearcher.getEndOffset(match);
+      }
+
+      // Of the matches in step, the last is that of the index, whether or not it starts at or after `from`
+      if (isInStep)
+        return last != QuickFindSearcher.NOT_FOUND && QuickFindSearcher.getStartOffset(last) >= from ? last : QuickFindSearcher.NOT_FOUND;
+
+      // The first match from the start of the window ends no later than any match of the index that starts after it
+      if (!isFound && start <= from)
+        return QuickFindSearcher.NOT_FOUND;
+    }
+
+    return QuickFindSearcher.NOT_FOUND;
+  }
+
+  boolean isTruncated() {
+    return isTruncated;
+  }
+
+  void documentChanged(final DocumentEvent event) {
+    if (isValid && !update(event))
+      isValid = false;
+
+    lastResult = NULL_RESULT;
+  }
+
+  // Patches the results for the edit in `event`, instead of rescanning the whole document. Matches that touch the
+  // edited range are dropped, matches after it are shifted, and only a window around the edit as wide as the search
+  // string is rescanned. Returns false if the results cannot be patched, in which case a full refresh is required.
+  private boolean update(final DocumentEvent event) {
+    final int maxLength = searcher.getMaxLength();
+    if (maxLength < 0)
+      return false;
+
+    final int offset = event.getOffset();
+    final int oldEnd = offset + event.getOldLength();
+    final int newEnd = offset + event.getNewLength();
+    final int delta = newEnd - oldEnd;
+
+    // Matches adjacent to the edit are dropped as well, because their whole word boundaries may have changed. A match
+    // can also start a word by following an escape, so this reaches to one more character after the edit.
+    final int from = firstEndingAtOrAfter(offset);
+    final int to = firstStartingAfter(oldEnd + 1);
+    int limit = newEnd + 1;
+    if (from < to) {
+      final int removedEnd = getEndOffset(to - 1);
+      limit = Math.max(limit, removedEnd > oldEnd ? removedEnd + delta : newEnd);
+      remove(from, to);
+    }
+
+    if (delta != 0)
+      for (int i = from << 1, length = size << 1; i < length; ++i)
+        offsets[i] += delta;
+
+    final CharSequence charSequence = event.getDocument().getImmutableCharSequence();
+    int index = from;
+    int lastEndOffset = Math.max(0, Math.max(from == 0 ? 0 : getEndOffset(from - 1), offset - maxLength));
+    do {
+      // Bound the search to the window
+      final long match = searcher.find(searcher.getWindow(charSequence, limit), lastEndOffset);
+      if (match == QuickFindSearcher.NOT_FOUND || QuickFindSearcher.getStartOffset(match) > limit)
+        break;
+
+      final int startOffset = QuickFindSearcher.getStartOffset(match);
+      final int endOffset = QuickFindSearcher.getEndOffset(match);
+      if (index < size) {
+        // Back in step with the results past the edit, which are therefore still valid
+        if (getStartOffset(index) == startOffset && getEndOffset(index) == endOffset)
+          break;
+
+        // Results overlapped by the new match are dropped, and whatever they had overshadowed is rescanned
+        while (index < size && getStartOffset(index) < endOffset) {
+          limit = Math.max(limit, getEndOffset(index));
+          remove(index, index + 1);
+        }
+      }
+
+      add(index++, startOffset, endOffset);
+      lastEndOffset = endOffset;
+    }
+    while (true);
+
+    return true;
+  }
+
+  private int firstEndingAtOrAfter(final int offset) {
+    int from = 0;
+    for (int to = size, mid; from < to;) {
+      mid = (from + to) / 2;
+      if (getEndOffset(mid) < offset)
+        from = mid + 1;
+      else
+        to = mid;
+    }
+
+    return from;
+  }
+
+  int firstStartingAfter(final int offset) {
+    int from = 0;
+    for (int to = size, mid; from < to;) {
+      mid = (from + to) / 2;
+      if (getStartOffset(mid) <= offset)
+        from = mid + 1;
+      else
+        to = mid;
+    }
+
+    return from;
+  }
+}
@@ -0,0 +1,147 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.Arrays;
+
+// Boyer-Moore-Horspool search for a literal string, with the case sensitivity and whole word semantics of
+// FindManager.findString(), that does not allocate per call.
+final class QuickFindLiteralMatcher {
+  private static final int TABLE_SIZE = 256;
+
+  private static char fold(final char ch) {
+    return Character.toLowerCase(Character.toUpperCase(ch));
+  }
+
+  private static boolean charsEqualIgnoreCase(final char a, final char b) {
+    return a == b || Character.toUpperCase(a) == Character.toUpperCase(b) || Character.toLowerCase(a) == Character.toLowerCase(b);
+  }
+
+  // Same as FindManagerImpl.isWholeWord(): a match that starts with an identifier character is a word start if it does
+  // not follow one (or follows an escape, such as "\nfoo" for "foo"), and a match that starts with any other character
+  // is a word start if it does not follow the same character, so that "=" is not found in "==". The same goes for the
+  // end of a match. A match is never empty.
+  static boolean isWordStart(final CharSequence charSequence, final int startOffset) {
+    if (startOffset == 0)
+      return true;
+
+    final char previous = charSequence.charAt(startOffset - 1);
+    final char first = charSequence.charAt(startOffset);
+    if (!Character.isJavaIdentifierPart(first))
+      return previous != first;
+
+    return !Character.isJavaIdentifierPart(previous) || startOffset > 1 && charSequence.charAt(startOffset - 2) == '\\';
+  }
+
+  static boolean isWordEnd(final CharSequence charSequence, final int endOffset) {
+    if (endOffset == charSequence.length())
+      return true;
+
+    final char last = charSequence.charAt(endOffset - 1);
+    final char next = charSequence.charAt(endOffset);
+    if (!Character.isJavaIdentifierPart(last))
+      return next != last;
+
+    return !Character.isJavaIdentifierPart(next);
+  }
+
+  // Returns whether `string` starts with `prefix`, with the case sensitivity of the search
+  static boolean startsWith(final String string, final String prefix, final boolean isCaseSensitive) {
+    if (prefix.length() > string.length())
+      return false;
+
+    for (int i = 0; i < prefix.length(); ++i)
+      if (isCaseSensitive ? string.charAt(i) != prefix.charAt(i) : fold(string.charAt(i)) != fold(prefix.charAt(i)))
+        return false;
+
+    return true;
+  }
+
+  // Returns whether `string` has a border (a proper prefix that is also a suffix), which is when its occurrences can
+  // overlap
+  static boolean hasBorder(final String string, final boolean isCaseSensitive) {
+    for (int length = 1; length < string.length(); ++length)
+      if (startsWith(string, string.substring(string.length() - length), isCaseSensitive))
+        return true;
+
+    return false;
+  }
+
+  private final char[] pattern;
+  private final boolean isCaseSensitive;
+  private final boolean isWholeWordsOnly;
+  // Shift by the (folded) last character of the window, bucketed by its low byte, with the minimum shift of a bucket
+  private final int[] shifts = new int[TABLE_SIZE];
+
+  QuickFindLiteralMatcher(final String pattern, final boolean isCaseSensitive, final boolean isWholeWordsOnly) {
+    this.pattern = pattern.toCharArray();
+    this.isCaseSensitive = isCaseSensitive;
+    this.isWholeWordsOnly = isWholeWordsOnly;
+    if (!isCaseSensitive)
+      for (int i = 0; i < this.pattern.length; ++i)
+        this.pattern[i] = fold(this.pattern[i]);
+
+    final int last = this.pattern.length - 1;
+    Arrays.fill(shifts, this.pattern.length);
+    for (int i = 0; i < last; ++i)
+      shifts[this.pattern[i] % TABLE_SIZE] = last - i;
+  }
+
+  long find(final CharSequence charSequence, final int offset) {
+    final int last = pattern.length - 1;
+    if (last < 0)
+      return QuickFindSearcher.NOT_FOUND;
+
+    for (int startOffset = Math.max(0, offset), max = charSequence.length() - pattern.length; startOffset <= max;) {
+      char ch = charSequence.charAt(startOffset + last);
+      if (!isCaseSensitive)
+        ch = fold(ch);
+
+      if (ch == pattern[last] && matches(charSequence, startOffset, last) && (!isWholeWordsOnly || isWordStart(charSequence, startOffset) && isWordEnd(charSequence, startOffset + pattern.length)))
+        return QuickFindSearcher.match(startOffset, startOffset + pattern.length);
+
+      startOffset += shifts[ch % TABLE_SIZE];
+    }
+
+    return QuickFindSearcher.NOT_FOUND;
+  }
+
+  // Returns whether there is a match at `startOffset`
+  boolean matchesAt(final CharSequence charSequence, final int startOffset) {
+    final int endOffset = startOffset + pattern.length;
+    if (pattern.length == 0 || endOffset > charSequence.length())
+      return false;
+
+    final char ch = charSequence.charAt(endOffset - 1);
+    return (isCaseSensitive ? ch : fold(ch)) == pattern[pattern.length - 1] && matches(charSequence, startOffset, pattern.length - 1) && (!isWholeWordsOnly || isWordStart(charSequence, startOffset) && isWordEnd(charSequence, endOffset));
+  }
+
+  private boolean matches(final CharSequence charSequence, final int startOffset, final int length) {
+    if (isCaseSensitive) {
+      for (int i = 0; i < length; ++i)
+        if (charSequence.charAt(startOffset + i) != pattern[i])
+          return false;
+    }
+    else {
+      for (int i = 0; i < length; ++i)
+        if (!charsEqualIgnoreCase(charSequence.charAt(startOffset + i), pattern[i]))
+          return false;
+    }
+
+    return true;
+  }
+}
@@ -16,15 +16,11 @@
 
 package org.safris.intellij.eclipse_actions;
 
-import java.util.List;
-
-import com.intellij.find.FindResult;
-
 public class QuickFindPreviousAction extends QuickFindAction {
-  private static int binaryClosestSearch(final List<FindResult> a, int from, int to, final int cursorOffset) {
+  private static int binaryClosestSearch(final QuickFindIndex a, int from, int to, final int cursorOffset) {
     for (int mid; from < to;) {
       mid = (from + to) / 2;
-      final int comparison = Integer.compare(cursorOffset, a.get(mid).getEndOffset());
+      final int comparison = Integer.compare(cursorOffset, a.getEndOffset(mid));
       if (comparison < 0)
         to = mid;
       else if (comparison > 0)
@@ -37,7 +33,7 @@ public class QuickFindPreviousAction extends QuickFindAction {
   }
 
   @Override
-  int getNextPrevious(final int cursorOffset) {
+  int getNextPrevious(final QuickFindIndex findResults, final int cursorOffset) {
     final int size = findResults.size();
     final int index = binaryClosestSearch(findResults, 0, size, cursorOffset) - 1;
     return index < 0 || index >= size ? size - 1 : index;
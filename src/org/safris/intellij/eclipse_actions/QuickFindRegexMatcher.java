@@ -0,0 +1,860 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.intellij.openapi.progress.ProgressManager;
+
+// Regular expression search for Quick Find that cannot hang the caller. Patterns are compiled to a program that is run
+// as a Pike VM, which takes time linear in the length of the text, and gives the same (leftmost-first) matches as
+// java.util.regex. Patterns with constructs that the VM does not support (such as backreferences and lookaround) fall
+// back to java.util.regex. Either way, each search runs under a Budget, which bounds the time and steps of a search on
+// the EDT, and checks for cancellation.
+final class QuickFindRegexMatcher {
+  static final class Budget {
+    // A budget for a search under a progress indicator, which is bounded only by its cancellation
+    static Budget unbounded() {
+      return new Budget(0, 0, false);
+    }
+
+    private final long deadline;
+    private final boolean isBounded;
+    private long steps;
+
+    Budget(final long timeoutMillis, final long maxSteps) {
+      this(timeoutMillis, maxSteps, true);
+    }
+
+    private Budget(final long timeoutMillis, final long maxSteps, final boolean isBounded) {
+      this.deadline = System.nanoTime() + timeoutMillis * 1000000;
+      this.steps = maxSteps;
+      this.isBounded = isBounded;
+    }
+
+    private void step() {
+      if ((--steps & 0x3ff) == 0) {
+        ProgressManager.checkCanceled();
+        if (isBounded && (steps < 0 || System.nanoTime() > deadline)) {
+          throw BudgetExceededException.INSTANCE;
+        }
+      }
+    }
+  }
+
+  // Thrown by a search that runs out of its Budget, so that running out is not mistaken for there being no match
+  static final class BudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private static final BudgetExceededException INSTANCE = new BudgetExceededException();
+
+    private BudgetExceededException() {
+      super(null, null, false, false);
+    }
+  }
+
+  // Counts every character that java.util.regex reads against the budget
+  private static final class BudgetedCharSequence implements CharSequence {
+    private final CharSequence charSequence;
+    private final Budget budget;
+
+    private BudgetedCharSequence(final CharSequence charSequence, final Budget budget) {
+      this.charSequence = charSequence;
+      this.budget = budget;
+    }
+
+    @Override
+    public int length() {
+      return charSequence.length();
+    }
+
+    @Override
+    public char charAt(final int index) {
+      budget.step();
+      return charSequence.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+      return charSequence.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return charSequence.toString();
+    }
+  }
+
+  private static final class UnsupportedException extends Exception {
+    private static final long serialVersionUID = 1L;
+    private static final UnsupportedException INSTANCE = new UnsupportedException();
+
+    private UnsupportedException() {
+      super(null, null, false, false);
+    }
+  }
+
+  // Instructions of the program
+  private static final int CHAR = 0;
+  private static final int CHAR_IGNORE_CASE = 1;
+  private static final int ANY = 2;
+  private static final int CLASS = 3;
+  private static final int MATCH = 4;
+  private static final int JMP = 5;
+  private static final int SPLIT = 6;
+  private static final int LINE_START = 7;
+  private static final int LINE_END = 8;
+  private static final int INPUT_START = 9;
+  private static final int INPUT_END = 10;
+  private static final int WORD_BOUNDARY = 11;
+  private static final int NOT_WORD_BOUNDARY = 12;
+
+  private static final int MAX_PROGRAM_SIZE = 10000;
+
+  static QuickFindRegexMatcher compile(final String regex, final boolean isCaseSensitive, final boolean isWholeWordsOnly) {
+    // Same flags as FindModel.compileRegExp()
+    final int flags = Pattern.MULTILINE | (isCaseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    Pattern pattern;
+    try {
+      pattern = Pattern.compile(regex, flags);
+    }
+    catch (final PatternSyntaxException e) {
+      pattern = null;
+    }
+
+    QuickFindRegexMatcher matcher = null;
+    if (pattern != null) {
+      try {
+        matcher = new QuickFindRegexMatcher(new Parser(regex, isCaseSensitive).parse(), null, isWholeWordsOnly);
+      }
+      catch (final UnsupportedException e) {
+        matcher = new QuickFindRegexMatcher(null, pattern, isWholeWordsOnly);
+      }
+    }
+
+    return matcher != null ? matcher : new QuickFindRegexMatcher(null, null, isWholeWordsOnly);
+  }
+
+  private final Program program;
+  private final Pattern pattern;
+  private final boolean isWholeWordsOnly;
+
+  private QuickFindRegexMatcher(final Program program, final Pattern pattern, final boolean isWholeWordsOnly) {
+    this.program = program;
+    this.pattern = pattern;
+    this.isWholeWordsOnly = isWholeWordsOnly;
+  }
+
+  boolean isLinear() {
+    return program != null;
+  }
+
+  // Returns the first non-empty match at or after `offset`, or NOT_FOUND if there is none. Throws
+  // BudgetExceededException if the budget is exceeded.
+  long find(final CharSequence charSequence, int offset, final Budget budget) {
+    if (program == null && pattern == null)
+      return QuickFindSearcher.NOT_FOUND;
+
+    final Matcher matcher = pattern == null ? null : pattern.matcher(new BudgetedCharSequence(charSequence, budget));
+    for (final int length = charSequence.length(); offset <= length;) {
+      final int startOffset;
+      final int endOffset;
+      if (matcher != null) {
+        if (!matcher.find(offset))
+          return QuickFindSearcher.NOT_FOUND;
+
+        startOffset = matcher.start();
+        endOffset = matcher.end();
+      }
+      else {
+        final long match = program.find(charSequence, offset, budget);
+        if (match == QuickFindSearcher.NOT_FOUND)
+          return QuickFindSearcher.NOT_FOUND;
+
+        startOffset = QuickFindSearcher.getStartOffset(match);
+        endOffset = QuickFindSearcher.getEndOffset(match);
+      }
+
+      // Same as FindManagerImpl, a match that is not a whole word is retried from the next offset
+      if (startOffset < endOffset && (!isWholeWordsOnly || QuickFindLiteralMatcher.isWordStart(charSequence, startOffset) && QuickFindLiteralMatcher.isWordEnd(charSequence, endOffset)))
+        return QuickFindSearcher.match(startOffset, endOffset);
+
+      offset = startOffset + 1;
+    }
+
+    return QuickFindSearcher.NOT_FOUND;
+  }
+
+  private static boolean isLineTerminator(final int ch) {
+    return ch == '\n' || ch == '\r' || ch == '\u0085' || (ch | 1) == '\u2029';
+  }
+
+  private static int fold(final int ch) {
+    return Character.toLowerCase(Character.toUpperCase(ch));
+  }
+
+  // Same as java.util.regex.Pattern.Bound
+  private static boolean isWord(final CharSequence charSequence, final int index, final int ch) {
+    if (ch == '_' || Character.isLetterOrDigit(ch))
+      return true;
+
+    if (Character.getType(ch) != Character.NON_SPACING_MARK)
+      return false;
+
+    for (int i = index; i >= 0; --i) {
+      final int base = Character.codePointAt(charSequence, i);
+      if (Character.isLetterOrDigit(base))
+        return true;
+
+      if (Character.getType(base) != Character.NON_SPACING_MARK)
+        return false;
+    }
+
+    return false;
+  }
+
+  private static boolean isWordBoundary(final CharSequence charSequence, final int index) {
+    final boolean left = index > 0 && isWord(charSequence, index - 1, Character.codePointBefore(charSequence, index));
+    final boolean right = index < charSequence.length() && isWord(charSequence, index, Character.codePointAt(charSequence, index));
+    return left != right;
+  }
+
+  private static final class CharClass {
+    // Ranges of code points, in pairs, and whether each range is matched ignoring case
+    private final int[] ranges;
+    private final boolean[] ignoreCase;
+    private final boolean isNegated;
+
+    private CharClass(final int[] ranges, final boolean[] ignoreCase, final boolean isNegated) {
+      this.ranges = ranges;
+      this.ignoreCase = ignoreCase;
+      this.isNegated = isNegated;
+    }
+
+    private boolean matches(final int ch) {
+      for (int i = 0; i < ignoreCase.length; ++i) {
+        final int lower = ranges[i * 2];
+        final int upper = ranges[i * 2 + 1];
+        if (lower <= ch && ch <= upper)
+          return !isNegated;
+
+        if (ignoreCase[i]) {
+          // Same as java.util.regex with UNICODE_CASE, a single character is folded, and a range is matched by either case
+          if (lower == upper ? fold(ch) == fold(lower) : inRange(lower, Character.toUpperCase(ch), upper) || inRange(lower, Character.toLowerCase(ch), upper))
+            return !isNegated;
+        }
+      }
+
+      return isNegated;
+    }
+
+    private static boolean inRange(final int lower, final int ch, final int upper) {
+      return lower <= ch && ch <= upper;
+    }
+  }
+
+  private static final class Program {
+    private final int[] ops;
+    private final int[] args1;
+    private final int[] args2;
+    private final CharClass[] classes;
+
+    private Program(final int[] ops, final int[] args1, final int[] args2, final CharClass[] classes) {
+      this.ops = ops;
+      this.args1 = args1;
+      this.args2 = args2;
+      this.classes = classes;
+    }
+
+    private static final class Threads {
+      private final int[] pcs;
+      private final int[] starts;
+      private int size;
+      private int generation;
+
+      private Threads(final int capacity) {
+        this.pcs = new int[capacity];
+        this.starts = new int[capacity];
+      }
+    }
+
+    // Runs the program from each offset from `offset` at once, with threads in order of priority, so that the first
+    // match found is the one that a backtracking matcher would find.
+    private long find(final CharSequence charSequence, final int offset, final Budget budget) {
+      final int length = charSequence.length();
+      final int[] marks = new int[ops.length];
+      final int[] stack = new int[ops.length];
+      Threads current = new Threads(ops.length);
+      Threads next = new Threads(ops.length);
+      int generation = 0;
+      current.generation = ++generation;
+      int matchStart = -1;
+      int matchEnd = -1;
+      for (int i = offset; ; ) {
+        if (matchStart < 0)
+          addThread(charSequence, current, marks, stack, i, i);
+
+        if (current.size == 0 && (matchStart >= 0 || i >= length))
+          break;
+
+        final int ch = i < length ? Character.codePointAt(charSequence, i) : -1;
+        final int nextIndex = ch > 0xffff ? i + 2 : i + 1;
+        next.size = 0;
+        next.generation = ++generation;
+        for (int t = 0; t < current.size; ++t) {
+          budget.step();
+          final int pc = current.pcs[t];
+          final int start = current.starts[t];
+          final boolean matches;
+          switch (ops[pc]) {
+            case MATCH:
+              matchStart = start;
+              matchEnd = i;
+              // Threads of lower priority are cut
+              t = current.size;
+              continue;
+            case CHAR:
+              matches = ch == args1[pc];
+              break;
+            case CHAR_IGNORE_CASE:
+              matches = ch >= 0 && fold(ch) == args1[pc];
+              break;
+            case ANY:
+              matches = ch >= 0 && !isLineTerminator(ch);
+              break;
+            case CLASS:
+              matches = ch >= 0 && classes[args1[pc]].matches(ch);
+              break;
+            default:
+              throw new IllegalStateException();
+          }
+
+          if (matches)
+            addThread(charSequence, next, marks, stack, pc + 1, start, nextIndex);
+        }
+
+        if (i >= length)
+          break;
+
+        final Threads swap = current;
+        current = next;
+        next = swap;
+        i = nextIndex;
+      }
+
+      return matchStart < 0 ? QuickFindSearcher.NOT_FOUND : QuickFindSearcher.match(matchStart, matchEnd);
+    }
+
+    private void addThread(final CharSequence charSequence, final Threads threads, final int[] marks, final int[] stack, final int start, final int index) {
+      addThread(charSequence, threads, marks, stack, 0, start, index);
+    }
+
+    // Follows the instructions that do not consume a character, in order of priority, and adds the threads that do
+    private void addThread(final CharSequence charSequence, final Threads threads, final int[] marks, final int[] stack, final int pc0, final int start, final int index) {
+      int top = 0;
+      stack[top++] = pc0;
+      while (top > 0) {
+        final int pc = stack[--top];
+        if (marks[pc] == threads.generation)
+          continue;
+
+        marks[pc] = threads.generation;
+        switch (ops[pc]) {
+          case JMP:
+            stack[top++] = args1[pc];
+            break;
+          case SPLIT:
+            stack[top++] = args2[pc];
+            stack[top++] = args1[pc];
+            break;
+          case LINE_START:
+            if (isLineStart(charSequence, index))
+              stack[top++] = pc + 1;
+            break;
+          case LINE_END:
+            if (isLineEnd(charSequence, index))
+              stack[top++] = pc + 1;
+            break;
+          case INPUT_START:
+            if (index == 0)
+              stack[top++] = pc + 1;
+            break;
+          case INPUT_END:
+            if (index == charSequence.length())
+              stack[top++] = pc + 1;
+            break;
+          case WORD_BOUNDARY:
+            if (isWordBoundary(charSequence, index))
+              stack[top++] = pc + 1;
+            break;
+          case NOT_WORD_BOUNDARY:
+            if (!isWordBoundary(charSequence, index))
+              stack[top++] = pc + 1;
+            break;
+          default:
+            threads.pcs[threads.size] = pc;
+            threads.starts[threads.size++] = start;
+        }
+      }
+    }
+
+    // Same as java.util.regex.Pattern.Caret in MULTILINE mode
+    private static boolean isLineStart(final CharSequence charSequence, final int index) {
+      if (index >= charSequence.length())
+        return false;
+
+      if (index == 0)
+        return true;
+
+      final char ch = charSequence.charAt(index - 1);
+      return isLineTerminator(ch) && !(ch == '\r' && charSequence.charAt(index) == '\n');
+    }
+
+    // Same as java.util.regex.Pattern.Dollar in MULTILINE mode
+    private static boolean isLineEnd(final CharSequence charSequence, final int index) {
+      if (index >= charSequence.length())
+        return true;
+
+      final char ch = charSequence.charAt(index);
+      if (ch == '\n')
+        return index == 0 || charSequence.charAt(index - 1) != '\r';
+
+      return ch == '\r' || ch == '\u0085' || (ch | 1) == '\u2029';
+    }
+  }
+
+  // Parses the subset of the java.util.regex syntax that the Program supports, and throws UnsupportedException for the
+  // rest. The pattern is known to be valid, because it has already been compiled by java.util.regex.
+  private static final class Parser {
+    private final String regex;
+    private final boolean isCaseSensitive;
+    private int index;
+
+    private final List<CharClass> classes = new ArrayList<>();
+    private int[] ops = new int[64];
+    private int[] args1 = new int[64];
+    private int[] args2 = new int[64];
+    private int size;
+
+    private Parser(final String regex, final boolean isCaseSensitive) {
+      this.regex = regex;
+      this.isCaseSensitive = isCaseSensitive;
+    }
+
+    private Program parse() throws UnsupportedException {
+      final Node node = parseAlternation();
+      if (index < regex.length())
+        throw UnsupportedException.INSTANCE;
+
+      node.emit(this);
+      emit(MATCH, 0, 0);
+      return new Program(Arrays.copyOf(ops, size), Arrays.copyOf(args1, size), Arrays.copyOf(args2, size), classes.toArray(new CharClass[0]));
+    }
+
+    private int emit(final int op, final int arg1, final int arg2) throws UnsupportedException {
+      if (size == MAX_PROGRAM_SIZE)
+        throw UnsupportedException.INSTANCE;
+
+      if (size == ops.length) {
+        ops = Arrays.copyOf(ops, size * 2);
+        args1 = Arrays.copyOf(args1, size * 2);
+        args2 = Arrays.copyOf(args2, size * 2);
+      }
+
+      ops[size] = op;
+      args1[size] = arg1;
+      args2[size] = arg2;
+      return size++;
+    }
+
+    private boolean peek(final char ch) {
+      return index < regex.length() && regex.charAt(index) == ch;
+    }
+
+    private Node parseAlternation() throws UnsupportedException {
+      final Node first = parseConcatenation();
+      if (!peek('|'))
+        return first;
+
+      final List<Node> alternatives = new ArrayList<>();
+      alternatives.add(first);
+      while (peek('|')) {
+        ++index;
+        alternatives.add(parseConcatenation());
+      }
+
+      return parser -> {
+        // SPLIT to each alternative in turn, with each alternative jumping to the end when done
+        final int[] jumps = new int[alternatives.size() - 1];
+        for (int i = 0; i < jumps.length; ++i) {
+          final int split = parser.emit(SPLIT, 0, 0);
+          parser.args1[split] = parser.size;
+          alternatives.get(i).emit(parser);
+          jumps[i] = parser.emit(JMP, 0, 0);
+          parser.args2[split] = parser.size;
+        }
+
+        alternatives.get(jumps.length).emit(parser);
+        for (final int jump : jumps)
+          parser.args1[jump] = parser.size;
+      };
+    }
+
+    private Node parseConcatenation() throws UnsupportedException {
+      final List<Node> nodes = new ArrayList<>();
+      while (index < regex.length() && !peek('|') && !peek(')'))
+        nodes.add(parseQuantified());
+
+      return parser -> {
+        for (final Node node : nodes)
+          node.emit(parser);
+      };
+    }
+
+    private Node parseQuantified() throws UnsupportedException {
+      final Node atom = parseAtom();
+      if (index == regex.length())
+        return atom;
+
+      final int min;
+      final int max;
+      final char ch = regex.charAt(index);
+      if (ch == '*') {
+        min = 0;
+        max = -1;
+        ++index;
+      }
+      else if (ch == '+') {
+        min = 1;
+        max = -1;
+        ++index;
+      }
+      else if (ch == '?') {
+        min = 0;
+        max = 1;
+        ++index;
+      }
+      else if (ch == '{') {
+        ++index;
+        min = parseInt();
+        if (peek(',')) {
+          ++index;
+          max = peek('}') ? -1 : parseInt();
+        }
+        else {
+          max = min;
+        }
+
+        if (!peek('}'))
+          throw UnsupportedException.INSTANCE;
+
+        ++index;
+      }
+      else {
+        return atom;
+      }
+
+      final boolean isGreedy;
+      if (peek('?')) {
+        isGreedy = false;
+        ++index;
+      }
+      else if (peek('+')) {
+        // Possessive quantifiers need backtracking
+        throw UnsupportedException.INSTANCE;
+      }
+      else {
+        isGreedy = true;
+      }
+
+      return parser -> {
+        for (int i = 0; i < min; ++i)
+          atom.emit(parser);
+
+        if (max < 0) {
+          final int split = parser.emit(SPLIT, 0, 0);
+          atom.emit(parser);
+          parser.emit(JMP, split, 0);
+          setSplit(parser, split, split + 1, parser.size, isGreedy);
+        }
+        else {
+          final int[] splits = new int[max - min];
+          for (int i = 0; i < splits.length; ++i) {
+            splits[i] = parser.emit(SPLIT, 0, 0);
+            atom.emit(parser);
+          }
+
+          for (final int split : splits)
+            setSplit(parser, split, split + 1, parser.size, isGreedy);
+        }
+      };
+    }
+
+    private static void setSplit(final Parser parser, final int split, final int into, final int over, final boolean isGreedy) {
+      parser.args1[split] = isGreedy ? into : over;
+      parser.args2[split] = isGreedy ? over : into;
+    }
+
+    private int parseInt() throws UnsupportedException {
+      final int start = index;
+      while (index < regex.length() && Character.isDigit(regex.charAt(index)))
+        ++index;
+
+      if (start == index || index - start > 4)
+        throw UnsupportedException.INSTANCE;
+
+      return Integer.parseInt(regex.substring(start, index));
+    }
+
+    private Node parseAtom() throws UnsupportedException {
+      final char ch = regex.charAt(index++);
+      switch (ch) {
+        case '(':
+          if (peek('?')) {
+            // Only non-capturing and named groups, and not lookaround, atomic groups or inline flags
+            if (regex.startsWith("?:", index))
+              index += 2;
+            else if (regex.startsWith("?<", index) && index + 2 < regex.length() && Character.isLetter(regex.charAt(index + 2)))
+              index = regex.indexOf('>', index) + 1;
+            else
+              throw UnsupportedException.INSTANCE;
+          }
+
+          final Node group = parseAlternation();
+          if (!peek(')'))
+            throw UnsupportedException.INSTANCE;
+
+          ++index;
+          return group;
+        case '[':
+          return emitClass(parseClass());
+        case '.':
+          return parser -> parser.emit(ANY, 0, 0);
+        case '^':
+          return parser -> parser.emit(LINE_START, 0, 0);
+        case '$':
+          return parser -> parser.emit(LINE_END, 0, 0);
+        case '\\':
+          return parseEscape();
+        case '*':
+        case '+':
+        case '?':
+        case '{':
+        case ')':
+          throw UnsupportedException.INSTANCE;
+        default:
+          if (Character.isHighSurrogate(ch) && index < regex.length() && Character.isLowSurrogate(regex.charAt(index)))
+            return emitChar(Character.toCodePoint(ch, regex.charAt(index++)));
+
+          return emitChar(ch);
+      }
+    }
+
+    private Node emitChar(final int ch) {
+      if (isCaseSensitive || fold(ch) == ch && Character.toUpperCase(ch) == ch)
+        return parser -> parser.emit(CHAR, ch, 0);
+
+      return parser -> parser.emit(CHAR_IGNORE_CASE, fold(ch), 0);
+    }
+
+    private Node emitClass(final CharClass charClass) {
+      return parser -> {
+        parser.classes.add(charClass);
+        parser.emit(CLASS, parser.classes.size() - 1, 0);
+      };
+    }
+
+    private Node parseEscape() throws UnsupportedException {
+      if (index == regex.length())
+        throw UnsupportedException.INSTANCE;
+
+      final char ch = regex.charAt(index++);
+      switch (ch) {
+        case 'd':
+        case 'D':
+        case 'w':
+        case 'W':
+        case 's':
+        case 'S':
+          final List<int[]> ranges = new ArrayList<>();
+          final boolean isNegated = addPredefinedClass(ranges, ch);
+          return emitClass(toCharClass(ranges, new ArrayList<>(), isNegated));
+        case 'b':
+          return parser -> parser.emit(WORD_BOUNDARY, 0, 0);
+        case 'B':
+          return parser -> parser.emit(NOT_WORD_BOUNDARY, 0, 0);
+        case 'A':
+          return parser -> parser.emit(INPUT_START, 0, 0);
+        case 'z':
+          return parser -> parser.emit(INPUT_END, 0, 0);
+        default:
+          return emitChar(parseEscapedChar(ch));
+      }
+    }
+
+    // Returns the character of an escape sequence that stands for a single character
+    private int parseEscapedChar(final char ch) throws UnsupportedException {
+      switch (ch) {
+        case 't':
+          return '\t';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 'f':
+          return '\f';
+        case 'a':
+          return '\u0007';
+        case 'e':
+          return '\u001B';
+        case 'x':
+          return parseHex(2);
+        case 'u':
+          return parseHex(4);
+        default:
+          // Any other letter or digit is a construct, such as a backreference, that is not supported
+          if (ch < 128 && Character.isLetterOrDigit(ch))
+            throw UnsupportedException.INSTANCE;
+
+          return ch;
+      }
+    }
+
+    private int parseHex(final int digits) throws UnsupportedException {
+      if (index + digits > regex.length())
+        throw UnsupportedException.INSTANCE;
+
+      int value = 0;
+      for (int i = 0; i < digits; ++i) {
+        final int digit = Character.digit(regex.charAt(index++), 16);
+        if (digit < 0)
+          throw UnsupportedException.INSTANCE;
+
+        value = value * 16 + digit;
+      }
+
+      return value;
+    }
+
+    // Adds the ranges of \d, \w or \s, and returns whether the class is negated (\D, \W or \S)
+    private static boolean addPredefinedClass(final List<int[]> ranges, final char ch) {
+      switch (Character.toLowerCase(ch)) {
+        case 'd':
+          ranges.add(new int[] {'0', '9'});
+          break;
+        case 'w':
+          ranges.add(new int[] {'0', '9'});
+          ranges.add(new int[] {'A', 'Z'});
+          ranges.add(new int[] {'_', '_'});
+          ranges.add(new int[] {'a', 'z'});
+          break;
+        default:
+          ranges.add(new int[] {'\t', '\r'});
+          ranges.add(new int[] {' ', ' '});
+      }
+
+      return Character.isUpperCase(ch);
+    }
+
+    private CharClass parseClass() throws UnsupportedException {
+      final boolean isNegated = peek('^');
+      if (isNegated)
+        ++index;
+
+      // A leading ']', nested classes and intersections are not supported
+      if (peek(']'))
+        throw UnsupportedException.INSTANCE;
+
+      final List<int[]> ranges = new ArrayList<>();
+      final List<Boolean> ignoreCase = new ArrayList<>();
+      while (!peek(']')) {
+        if (index == regex.length() || peek('[') || regex.startsWith("&&", index))
+          throw UnsupportedException.INSTANCE;
+
+        final int lower = parseClassChar();
+        if (lower < 0) {
+          // A predefined class, which is only supported if it is not negated, and is matched regardless of case
+          final List<int[]> predefined = new ArrayList<>();
+          if (addPredefinedClass(predefined, regex.charAt(index - 1)))
+            throw UnsupportedException.INSTANCE;
+
+          for (final int[] range : predefined) {
+            ranges.add(range);
+            ignoreCase.add(Boolean.FALSE);
+          }
+
+          continue;
+        }
+
+        int upper = lower;
+        if (peek('-') && index + 1 < regex.length() && regex.charAt(index + 1) != ']') {
+          ++index;
+          upper = parseClassChar();
+          if (upper < 0)
+            throw UnsupportedException.INSTANCE;
+        }
+
+        ranges.add(new int[] {lower, upper});
+        ignoreCase.add(!isCaseSensitive);
+      }
+
+      ++index;
+      return toCharClass(ranges, ignoreCase, isNegated);
+    }
+
+    // Returns the next character in a class, or -1 if it is a predefined class
+    private int parseClassChar() throws UnsupportedException {
+      final char ch = regex.charAt(index++);
+      if (ch != '\\') {
+        if (Character.isHighSurrogate(ch) && index < regex.length() && Character.isLowSurrogate(regex.charAt(index)))
+          return Character.toCodePoint(ch, regex.charAt(index++));
+
+        return ch;
+      }
+
+      if (index == regex.length())
+        throw UnsupportedException.INSTANCE;
+
+      final char escaped = regex.charAt(index++);
+      if ("dDwWsS".indexOf(escaped) >= 0)
+        return -1;
+
+      return parseEscapedChar(escaped);
+    }
+
+    private static CharClass toCharClass(final List<int[]> ranges, final List<Boolean> ignoreCase, final boolean isNegated) {
+      final int[] array = new int[ranges.size() * 2];
+      final boolean[] flags = new boolean[ranges.size()];
+      for (int i = 0; i < flags.length; ++i) {
+        array[i * 2] = ranges.get(i)[0];
+        array[i * 2 + 1] = ranges.get(i)[1];
+        flags[i] = i < ignoreCase.size() && ignoreCase.get(i);
+      }
+
+      return new CharClass(array, flags, isNegated);
+    }
+  }
+
+  @FunctionalInterface
+  private interface Node {
+    void emit(Parser parser) throws UnsupportedException;
+  }
+}
@@ -0,0 +1,338 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.concurrency.CancellablePromise;
+
+import com.intellij.find.FindManager;
+import com.intellij.find.FindModel;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+// Finds the file that Quick Find rolls over to when it passes the last (or first) match of a document: the next (or
+// previous) open editor, or file in project view order, that contains the search string. Files are searched in the
+// background, outward from the current file in both directions, up to the first file with a match in each direction,
+// so that rolling over never waits on a search. Only accessed from the EDT.
+final class QuickFindRollover {
+  private static final int LOOKAHEAD = 4;
+  private static final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Quick Find Rollover", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+  private static Project project;
+  private static QuickFindIndex.Key key;
+  private static FindManager findManager;
+  private static FindModel findModel;
+  private static boolean isProjectOrder;
+  private static List<VirtualFile> projectFiles;
+  private static CancellablePromise<List<VirtualFile>> projectFilesPromise;
+  private static VirtualFile currentFile;
+  // Whether each file that has been searched contains a match, and the searches in flight
+  private static final Map<VirtualFile,Boolean> hasMatches = new HashMap<>();
+  private static final Map<VirtualFile,CancellablePromise<Boolean>> promises = new HashMap<>();
+  private static boolean isInitialized;
+
+  static boolean isEnabled() {
+    return Registry.is("eclipse.actions.quickfind.rollover", false);
+  }
+
+  private static void init() {
+    if (isInitialized)
+      return;
+
+    isInitialized = true;
+    final Application application = ApplicationManager.getApplication();
+    EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentListener() {
+      @Override
+      public void documentChanged(final DocumentEvent event) {
+        // The file is searched again on the next prefetch()
+        final VirtualFile file = FileDocumentManager.getInstance().getFile(event.getDocument());
+        if (file != null)
+          hasMatches.remove(file);
+      }
+    }, application);
+    application.getMessageBus().connect(application).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void before(@NotNull final List<? extends VFileEvent> events) {
+        for (final VFileEvent event : events)
+          if (isProjectFilesChange(event, true))
+            clearProjectFiles();
+      }
+
+      @Override
+      public void after(@NotNull final List<? extends VFileEvent> events) {
+        for (final VFileEvent event : events) {
+          final VirtualFile file = event.getFile();
+          if (file != null)
+            hasMatches.remove(file);
+
+          if (isProjectFilesChange(event, false))
+            clearProjectFiles();
+        }
+      }
+    });
+  }
+
+  // Whether `event` changes the files in project view order: the creation, deletion, move or rename of a file in the
+  // content of the project, which is where the file is before (or after) the event
+  private static boolean isProjectFilesChange(final VFileEvent event, final boolean isBefore) {
+    if (projectFiles == null && projectFilesPromise == null || project == null || project.isDisposed())
+      return false;
+
+    if (!(isBefore ? event instanceof VFileDeleteEvent : event instanceof VFileCreateEvent) && !(event instanceof VFileMoveEvent) && !(event instanceof VFilePropertyChangeEvent && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent)event).getPropertyName())))
+      return false;
+
+    final VirtualFile file = event.getFile();
+    return file != null && file.isValid() && ProjectFileIndex.getInstance(project).isInContent(file);
+  }
+
+  // Starts to search the files around `file` for the search string, if not already searched.
+  static void prefetch(final Project project, final VirtualFile file, final String searchString, final FindManager findManager, final FindModel findModel) {
+    init();
+    final QuickFindIndex.Key key = new QuickFindIndex.Key(searchString, findModel);
+    final boolean isProjectOrder = Registry.is("eclipse.actions.quickfind.rollover.project", false);
+    if (project != QuickFindRollover.project || !key.equals(QuickFindRollover.key) || isProjectOrder != QuickFindRollover.isProjectOrder) {
+      cancel();
+      // The files in project view order do not depend on the search, and are kept until the project changes
+      if (project != QuickFindRollover.project)
+        clearProjectFiles();
+
+      QuickFindRollover.project = project;
+      QuickFindRollover.key = key;
+      QuickFindRollover.findManager = findManager;
+      QuickFindRollover.findModel = new FindModel();
+      QuickFindRollover.findModel.copyFrom(findModel);
+      QuickFindRollover.findModel.setStringToFind(searchString);
+      QuickFindRollover.isProjectOrder = isProjectOrder;
+    }
+
+    search(file);
+  }
+
+  // Returns the file to roll over to from `file`, or null if there is none, or if the next file in line has not been
+  // searched yet, in which case Quick Find wraps around within `file` as usual.
+  static VirtualFile next(final VirtualFile file, final boolean isForward) {
+    final List<VirtualFile> files = getFiles(file, isForward);
+    if (files == null)
+      return null;
+
+    for (final VirtualFile next : files) {
+      final Boolean hasMatch = hasMatches.get(next);
+      if (hasMatch == null)
+        return null;
+
+      if (hasMatch)
+        return next;
+    }
+
+    return null;
+  }
+
+  // Returns the files after (or before) `file`, in order and wrapping around, not including `file`. Returns null if the
+  // files in project view order are still being collected.
+  private static List<VirtualFile> getFiles(final VirtualFile file, final boolean isForward) {
+    final List<VirtualFile> files;
+    if (isProjectOrder) {
+      if (projectFiles == null) {
+        if (projectFilesPromise == null)
+          collectProjectFiles();
+
+        return null;
+      }
+
+      files = projectFiles;
+    }
+    else {
+      files = Arrays.asList(FileEditorManager.getInstance(project).getOpenFiles());
+    }
+
+    int index = files.indexOf(file);
+    final List<VirtualFile> result = new ArrayList<>(files.size());
+    if (index < 0 && isProjectOrder) {
+      // A file outside of the project goes to where it would be in project view order
+      index = -Collections.binarySearch(files, file, QuickFindRollover::compareProjectViewOrder) - 1;
+      if (!isForward)
+        --index;
+    }
+    else if (index < 0) {
+      // The open editors are in the order of their tabs, so a file that is not open goes to the first (or last) tab
+      index = isForward ? 0 : files.size() - 1;
+    }
+    else {
+      index += isForward ? 1 : -1;
+    }
+
+    for (int i = 0, size = files.size(); i < size; ++i) {
+      final VirtualFile next = files.get(((isForward ? index + i : index - i) % size + size) % size);
+      if (!next.equals(file) && !result.contains(next))
+        result.add(next);
+    }
+
+    return result;
+  }
+
+  private static void collectProjectFiles() {
+    final Project project = QuickFindRollover.project;
+    projectFilesPromise = ReadAction.nonBlocking(() -> {
+      final List<VirtualFile> files = new ArrayList<>();
+      ProjectFileIndex.getInstance(project).iterateContent(file -> {
+        if (!file.isDirectory() && !file.getFileType().isBinary())
+          files.add(file);
+
+        return true;
+      });
+      files.sort(QuickFindRollover::compareProjectViewOrder);
+      return files;
+    })
+      .expireWith(project)
+      .finishOnUiThread(ModalityState.defaultModalityState(), files -> {
+        projectFilesPromise = null;
+        projectFiles = files;
+        if (currentFile != null)
+          search(currentFile);
+      })
+      .submit(executor);
+  }
+
+  // Same order as the project view: by path, with directories before files, and names ignoring case
+  static int compareProjectViewOrder(final VirtualFile a, final VirtualFile b) {
+    final String[] as = a.getPath().split("/");
+    final String[] bs = b.getPath().split("/");
+    for (int i = 0, length = Math.min(as.length, bs.length); i < length; ++i) {
+      if (as[i].equals(bs[i]))
+        continue;
+
+      final boolean isDirectoryA = i < as.length - 1;
+      final boolean isDirectoryB = i < bs.length - 1;
+      if (isDirectoryA != isDirectoryB)
+        return isDirectoryA ? -1 : 1;
+
+      final int comparison = String.CASE_INSENSITIVE_ORDER.compare(as[i], bs[i]);
+      return comparison != 0 ? comparison : as[i].compareTo(bs[i]);
+    }
+
+    return Integer.compare(as.length, bs.length);
+  }
+
+  // Searches the files on both sides of `file`, up to the first file with a match on each side, with up to LOOKAHEAD
+  // searches in flight on each side. Each completed search continues from where it left off.
+  private static void search(final VirtualFile file) {
+    currentFile = file;
+    if (project == null || project.isDisposed())
+      return;
+
+    for (final boolean isForward : new boolean[] {true, false}) {
+      final List<VirtualFile> files = getFiles(file, isForward);
+      if (files == null)
+        return;
+
+      int inFlight = 0;
+      for (final VirtualFile next : files) {
+        final Boolean hasMatch = hasMatches.get(next);
+        if (hasMatch != null) {
+          if (hasMatch)
+            break;
+
+          continue;
+        }
+
+        if (!promises.containsKey(next))
+          search(next, file);
+
+        if (++inFlight == LOOKAHEAD)
+          break;
+      }
+    }
+  }
+
+  private static void search(final VirtualFile file, final VirtualFile from) {
+    final FindModel findModel = QuickFindRollover.findModel;
+    final QuickFindSearcher searcher = new QuickFindSearcher(findManager, findModel, file);
+    promises.put(file, ReadAction.nonBlocking(() -> {
+      if (!file.isValid() || FileUtilRt.isTooLarge(file.getLength()))
+        return false;
+
+      // Files that the persistent index rules out are not read at all
+      if (QuickFindTokenIndex.isAbsent(file, searcher.getStringToFind(), findModel))
+        return false;
+
+      // The text of a file that has no document yet is loaded without creating one, which is only done for the file that
+      // is rolled over to
+      final Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+      if (document == null && file.getFileType().isBinary())
+        return false;
+
+      final CharSequence text = document != null ? document.getImmutableCharSequence() : LoadTextUtil.loadText(file);
+      QuickFindTokenIndex.update(file, text);
+      return searcher.find(text, 0) != QuickFindSearcher.NOT_FOUND;
+    })
+      .expireWith(project)
+      .finishOnUiThread(ModalityState.defaultModalityState(), hasMatch -> {
+        promises.remove(file);
+        hasMatches.put(file, hasMatch);
+        if (from.equals(currentFile))
+          search(from);
+      })
+      .submit(executor));
+  }
+
+  private static void cancel() {
+    for (final CancellablePromise<Boolean> promise : promises.values())
+      promise.cancel();
+
+    promises.clear();
+    hasMatches.clear();
+  }
+
+  private static void clearProjectFiles() {
+    if (projectFilesPromise != null) {
+      projectFilesPromise.cancel();
+      projectFilesPromise = null;
+    }
+
+    projectFiles = null;
+  }
+}
@@ -0,0 +1,202 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.intellij.find.FindManager;
+import com.intellij.find.FindModel;
+import com.intellij.find.FindResult;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+
+// Finds the matches of a FindModel in a CharSequence. A match is packed into a long, with the start offset in the high
+// int and the end offset in the low int, so that searching does not allocate a result per match.
+final class QuickFindSearcher {
+  static final long NOT_FOUND = -1;
+
+  private static final int PARALLEL_THRESHOLD = 1 << 20;
+  private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+  static int getStartOffset(final long match) {
+    return (int)(match >>> 32);
+  }
+
+  static int getEndOffset(final long match) {
+    return (int)match;
+  }
+
+  static long match(final int startOffset, final int endOffset) {
+    return (long)startOffset << 32 | endOffset;
+  }
+
+  private final FindManager findManager;
+  private final FindModel findModel;
+  private final VirtualFile virtualFile;
+  private final QuickFindLiteralMatcher literalMatcher;
+  private final QuickFindRegexMatcher regexMatcher;
+
+  QuickFindSearcher(final FindManager findManager, final FindModel findModel, final VirtualFile virtualFile) {
+    this.findManager = findManager;
+    this.findModel = findModel;
+    this.virtualFile = virtualFile;
+    // FindManager remains in use for the searches that are language-aware, or that it rewrites into regular expressions
+    final String stringToFind = findModel.getStringToFind();
+    final boolean isLiteral = !findModel.isRegularExpressions() && findModel.getSearchContext() == FindModel.SearchContext.ANY && stringToFind.indexOf('\n') < 0 && stringToFind.indexOf('\r') < 0;
+    this.literalMatcher = isLiteral ? new QuickFindLiteralMatcher(stringToFind, findModel.isCaseSensitive(), findModel.isWholeWordsOnly()) : null;
+    // The pattern is compiled once, and is cached along with the QuickFindIndex of its search key
+    final boolean isRegex = findModel.isRegularExpressions() && findModel.getSearchContext() == FindModel.SearchContext.ANY;
+    this.regexMatcher = isRegex ? QuickFindRegexMatcher.compile(stringToFind, findModel.isCaseSensitive(), findModel.isWholeWordsOnly()) : null;
+  }
+
+  // Returns a budget for a search with a regular expression, so that a pathological pattern cannot hang the EDT. A search
+  // under a progress indicator, such as the build of an index in the background, is instead bounded by its cancellation,
+  // so that its results are never cut short.
+  private QuickFindRegexMatcher.Budget newBudget() {
+    if (regexMatcher == null)
+      return null;
+
+    if (ProgressManager.getInstance().getProgressIndicator() != null)
+      return QuickFindRegexMatcher.Budget.unbounded();
+
+    return new QuickFindRegexMatcher.Budget(Registry.intValue("eclipse.actions.quickfind.regex.timeout", 1000), Registry.intValue("eclipse.actions.quickfind.regex.steps", 200) * 1000000L);
+  }
+
+  boolean isLiteral() {
+    return literalMatcher != null;
+  }
+
+  boolean matchesAt(final CharSequence charSequence, final int offset) {
+    return literalMatcher.matchesAt(charSequence, offset);
+  }
+
+  String getStringToFind() {
+    return findModel.getStringToFind();
+  }
+
+  // Returns the length of the longest possible match, or -1 if the matches in a window of the text cannot be determined
+  // from that window alone: the extent of a regular expression is unknown, and a search context depends on the lexer.
+  int getMaxLength() {
+    return findModel.isRegularExpressions() || findModel.getSearchContext() != FindModel.SearchContext.ANY ? -1 : findModel.getStringToFind().length();
+  }
+
+  // Returns the first match at or after `offset`. Throws QuickFindRegexMatcher.BudgetExceededException if a search with a
+  // regular expression runs out of its budget.
+  long find(final CharSequence charSequence, final int offset) {
+    return find(charSequence, offset, newBudget());
+  }
+
+  private long find(final CharSequence charSequence, final int offset, final QuickFindRegexMatcher.Budget budget) {
+    if (literalMatcher != null)
+      return literalMatcher.find(charSequence, offset);
+
+    if (regexMatcher != null)
+      return regexMatcher.find(charSequence, offset, budget);
+
+    final FindResult findResult = findManager.findString(charSequence, offset, findModel, virtualFile);
+    return findResult.isStringFound() ? match(findResult.getStartOffset(), findResult.getEndOffset()) : NOT_FOUND;
+  }
+
+  // Returns the start and end offsets, packed in pairs, of all matches in `charSequence`. Large texts are split into
+  // chunks that are searched in parallel, when the matches in a window can be determined from that window alone.
+  int[] findAll(final CharSequence charSequence) {
+    final int textLength = charSequence.length();
+    final int parallelism = ForkJoinPool.getCommonPoolParallelism();
+    if (textLength < PARALLEL_THRESHOLD || parallelism < 2 || getMaxLength() < 0)
+      return findAll(charSequence, 0, textLength);
+
+    final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    final int chunkSize = Math.max(MIN_CHUNK_SIZE, textLength / (parallelism * 4));
+    final List<ForkJoinTask<int[]>> tasks = new ArrayList<>();
+    for (int from = 0; from < textLength; from += chunkSize) {
+      final int chunkFrom = from;
+      final int chunkTo = Math.min(textLength, from + chunkSize);
+      // Each chunk inherits the indicator, so that it is canceled along with the caller
+      tasks.add(ForkJoinTask.adapt(() -> indicator == null ? findAll(charSequence, chunkFrom, chunkTo) : ProgressManager.getInstance().runProcess(() -> findAll(charSequence, chunkFrom, chunkTo), indicator)));
+    }
+
+    ForkJoinTask.invokeAll(tasks);
+    int[] offsets = tasks.get(0).join();
+    int length = offsets.length;
+    for (int i = 1, size = tasks.size(); i < size; ++i) {
+      final int[] chunk = tasks.get(i).join();
+      final int chunkTo = Math.min(textLength, (i + 1) * chunkSize);
+      int j = 0;
+      int lastEndOffset = length == 0 ? 0 : offsets[length - 1];
+      if (chunk.length > 0 && chunk[0] < lastEndOffset) {
+        // The last match of the prior chunk runs into this chunk, so search on from its end until back in step
+        final CharSequence window = getWindow(charSequence, chunkTo);
+        for (long match; (match = find(window, lastEndOffset)) != NOT_FOUND && getStartOffset(match) < chunkTo;) {
+          while (j < chunk.length && chunk[j] < getStartOffset(match))
+            j += 2;
+
+          if (j < chunk.length && chunk[j] == getStartOffset(match) && chunk[j + 1] == getEndOffset(match))
+            break;
+
+          if (length + 2 > offsets.length)
+            offsets = Arrays.copyOf(offsets, Math.max(32, length * 2));
+
+          offsets[length++] = getStartOffset(match);
+          offsets[length++] = lastEndOffset = getEndOffset(match);
+        }
+
+        while (j < chunk.length && chunk[j] < lastEndOffset)
+          j += 2;
+      }
+
+      if (length + chunk.length - j > offsets.length)
+        offsets = Arrays.copyOf(offsets, Math.max(length * 2, length + chunk.length - j));
+
+      System.arraycopy(chunk, j, offsets, length, chunk.length - j);
+      length += chunk.length - j;
+    }
+
+    return offsets.length == length ? offsets : Arrays.copyOf(offsets, length);
+  }
+
+  // Returns the start and end offsets, packed in pairs, of the matches that start in [from, to), searching from `from`.
+  // A regular expression is given one budget for the whole scan, which throws if it runs out, rather than return the
+  // matches up to there as if they were all.
+  private int[] findAll(final CharSequence charSequence, final int from, final int to) {
+    final CharSequence window = to == charSequence.length() ? charSequence : getWindow(charSequence, to);
+    final QuickFindRegexMatcher.Budget budget = newBudget();
+    int[] offsets = new int[32];
+    int length = 0;
+    for (long match; (match = find(window, length == 0 ? from : offsets[length - 1], budget)) != NOT_FOUND && getStartOffset(match) < to;) {
+      ProgressManager.checkCanceled();
+      if (length == offsets.length)
+        offsets = Arrays.copyOf(offsets, length * 2);
+
+      offsets[length++] = getStartOffset(match);
+      offsets[length++] = getEndOffset(match);
+    }
+
+    return Arrays.copyOf(offsets, length);
+  }
+
+  // Returns the text up to the end of the longest match that can start before `to`, plus one character for the whole
+  // word check.
+  CharSequence getWindow(final CharSequence charSequence, final int to) {
+    return charSequence.subSequence(0, Math.min(charSequence.length(), to + getMaxLength() + 1));
+  }
+}
@@ -0,0 +1,55 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.intellij.openapi.editor.CaretModel;
+import com.intellij.openapi.editor.CaretState;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.LogicalPosition;
+import com.intellij.openapi.editor.ScrollType;
+import com.intellij.openapi.project.Project;
+
+public class QuickFindSelectAllAction extends QuickFindCaretAction {
+  @Override
+  void actionPerformed(final Project project, final Editor editor, final QuickFindIndex index) {
+    if (!index.refreshNow(project))
+      return;
+
+    final int size = index.size();
+    if (size == 0)
+      return;
+
+    // Beyond the maximum number of carets, the carets go to the matches from the selection onward
+    final CaretModel caretModel = editor.getCaretModel();
+    final int count = Math.min(size, caretModel.getMaxCaretCount());
+    final int first = count == size ? 0 : index.firstStartingAfter(editor.getSelectionModel().getSelectionStart() - 1) % size;
+    final List<CaretState> caretStates = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      final int j = (first + i) % size;
+      final LogicalPosition startPosition = editor.offsetToLogicalPosition(index.getStartOffset(j));
+      final LogicalPosition endPosition = editor.offsetToLogicalPosition(index.getEndOffset(j));
+      caretStates.add(new CaretState(endPosition, startPosition, endPosition));
+    }
+
+    // All carets are set in one batch, rather than added one at a time
+    caretModel.setCaretsAndSelections(caretStates);
+    editor.getScrollingModel().scrollToCaret(ScrollType.MAKE_VISIBLE);
+  }
+}
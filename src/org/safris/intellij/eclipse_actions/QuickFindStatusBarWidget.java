@@ -0,0 +1,129 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.awt.event.MouseEvent;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.intellij.find.EditorSearchSession;
+import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.StatusBarWidget;
+import com.intellij.openapi.wm.WindowManager;
+import com.intellij.util.Consumer;
+
+// Shows the position of the current Quick Find match, such as "37 of 12,408", as published by QuickFindAction from its
+// index, so that showing it costs no search of its own. It is cleared when another editor is selected, or when the
+// search session that it was published for is closed.
+final class QuickFindStatusBarWidget implements StatusBarWidget, StatusBarWidget.TextPresentation {
+  static final String ID = "eclipse.actions.QuickFind";
+
+  // Publishes the position of the current match (from 0) in `session`, or clears it if `index` is -1
+  static void update(final Project project, final EditorSearchSession session, final int index, final int size) {
+    final StatusBar statusBar = WindowManager.getInstance().getStatusBar(project);
+    if (statusBar == null)
+      return;
+
+    final StatusBarWidget widget = statusBar.getWidget(ID);
+    if (!(widget instanceof QuickFindStatusBarWidget))
+      return;
+
+    final QuickFindStatusBarWidget quickFindWidget = (QuickFindStatusBarWidget)widget;
+    if (session != quickFindWidget.session) {
+      quickFindWidget.session = session;
+      Disposer.register(session, () -> {
+        if (quickFindWidget.session == session)
+          quickFindWidget.clear();
+      });
+    }
+
+    quickFindWidget.setText(index < 0 ? "" : size == 0 ? "No matches" : String.format("%,d of %,d", index + 1, size));
+  }
+
+  private StatusBar statusBar;
+  private EditorSearchSession session;
+  private String text = "";
+
+  QuickFindStatusBarWidget(final Project project) {
+    project.getMessageBus().connect(this).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new FileEditorManagerListener() {
+      @Override
+      public void selectionChanged(@NotNull final FileEditorManagerEvent event) {
+        clear();
+      }
+    });
+  }
+
+  private void clear() {
+    session = null;
+    setText("");
+  }
+
+  private void setText(final String text) {
+    if (text.equals(this.text))
+      return;
+
+    this.text = text;
+    if (statusBar != null)
+      statusBar.updateWidget(ID);
+  }
+
+  @Override
+  @NotNull
+  public String ID() {
+    return ID;
+  }
+
+  @Override
+  public WidgetPresentation getPresentation() {
+    return this;
+  }
+
+  @Override
+  public void install(@NotNull final StatusBar statusBar) {
+    this.statusBar = statusBar;
+  }
+
+  @Override
+  @NotNull
+  public String getText() {
+    return text;
+  }
+
+  @Override
+  public float getAlignment() {
+    return 0;
+  }
+
+  @Override
+  public String getTooltipText() {
+    return text.isEmpty() ? null : "Quick Find match";
+  }
+
+  @Override
+  public Consumer<MouseEvent> getClickConsumer() {
+    return null;
+  }
+
+  @Override
+  public void dispose() {
+    statusBar = null;
+  }
+}
@@ -0,0 +1,60 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.StatusBarWidget;
+import com.intellij.openapi.wm.StatusBarWidgetFactory;
+
+public class QuickFindStatusBarWidgetFactory implements StatusBarWidgetFactory {
+  @Override
+  @NotNull
+  public String getId() {
+    return QuickFindStatusBarWidget.ID;
+  }
+
+  @Override
+  @NotNull
+  public String getDisplayName() {
+    return "Quick Find Match";
+  }
+
+  @Override
+  public boolean isAvailable(@NotNull final Project project) {
+    return true;
+  }
+
+  @Override
+  @NotNull
+  public StatusBarWidget createWidget(@NotNull final Project project) {
+    return new QuickFindStatusBarWidget(project);
+  }
+
+  @Override
+  public void disposeWidget(@NotNull final StatusBarWidget widget) {
+    Disposer.dispose(widget);
+  }
+
+  @Override
+  public boolean canBeEnabledOn(@NotNull final StatusBar statusBar) {
+    return true;
+  }
+}
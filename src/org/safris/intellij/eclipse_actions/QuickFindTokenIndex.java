@@ -0,0 +1,366 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.intellij.find.FindModel;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+// Persistent index of the trigrams (runs of three characters) in each file that Quick Find has searched across files, so
+// that after a restart, the files that cannot contain a search string are skipped without being read. Each file has a
+// sorted set of the hashes of its case folded trigrams, which is valid for as long as the timestamp and length of the
+// file are unchanged. Trigrams answer substring searches as well as whole word searches, for search strings of at least
+// three characters.
+//
+// The index is kept in the IDE system directory, in files of one generation each, named by generation number. A file
+// is memory-mapped, and has the format:
+//
+//   int magic, int version, int count, long crc32 (of the rest)
+//   count * (int urlLength, byte[urlLength] url, long timeStamp, long length, int hashCount, int[hashCount] hashes)
+//
+// with the entries from least to most recently used. Changes are held in memory, and written to the next generation
+// from time to time. A generation is written to a temporary file, that is only renamed into place once complete, so
+// that a crash leaves the prior generation intact. Least recently used entries are evicted past the size cap.
+final class QuickFindTokenIndex {
+  private static final int MAGIC = 0x51465449;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 20;
+  private static final String PREFIX = "tokens.";
+  private static final String SUFFIX = ".dat";
+  private static final long FLUSH_DELAY = 30;
+
+  private static final class Entry {
+    private final long timeStamp;
+    private final long length;
+    private final int count;
+    // The hashes are either in memory, or in the mapped buffer at `position`
+    private final int[] hashes;
+    private final int position;
+
+    private Entry(final long timeStamp, final long length, final int count, final int[] hashes, final int position) {
+      this.timeStamp = timeStamp;
+      this.length = length;
+      this.count = count;
+      this.hashes = hashes;
+      this.position = position;
+    }
+
+    private int getHash(final int index) {
+      return hashes != null ? hashes[index] : buffer.getInt(position + index * 4);
+    }
+
+    private boolean contains(final int hash) {
+      int from = 0;
+      for (int to = count, mid; from < to;) {
+        mid = (from + to) >>> 1;
+        final int midHash = getHash(mid);
+        if (midHash < hash)
+          from = mid + 1;
+        else if (midHash > hash)
+          to = mid;
+        else
+          return true;
+      }
+
+      return false;
+    }
+  }
+
+  private static final LinkedHashMap<String,Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private static MappedByteBuffer buffer;
+  private static long generation;
+  private static long sizeInBytes;
+  private static boolean isLoaded;
+  private static boolean isDirty;
+  private static boolean isFlushScheduled;
+
+  static boolean isEnabled() {
+    return Registry.is("eclipse.actions.quickfind.persistent.index", false);
+  }
+
+  private static Path getDirectory() {
+    return Paths.get(PathManager.getSystemPath(), "eclipse-actions");
+  }
+
+  private static long getSizeInBytes(final int urlLength, final int count) {
+    return 4 + urlLength + 8 + 8 + 4 + count * 4L;
+  }
+
+  // Returns true if `file`, as last indexed, has no match of `searchString`: a trigram of `searchString` is not in the
+  // file. Returns false if the file may have a match, or is not indexed, or has changed since, or if `searchString` is
+  // shorter than a trigram.
+  static boolean isAbsent(final VirtualFile file, final String searchString, final FindModel findModel) {
+    if (!isEnabled() || findModel.isRegularExpressions() || FileDocumentManager.getInstance().isFileModified(file))
+      return false;
+
+    final int[] hashes = getTrigramHashes(searchString, 0, searchString.length());
+    if (hashes.length == 0)
+      return false;
+
+    synchronized (QuickFindTokenIndex.class) {
+      load();
+      final Entry entry = entries.get(file.getUrl());
+      if (entry == null || entry.timeStamp != file.getTimeStamp() || entry.length != file.getLength())
+        return false;
+
+      for (final int hash : hashes)
+        if (!entry.contains(hash))
+          return true;
+
+      return false;
+    }
+  }
+
+  // Indexes the text of `file`, if it is not indexed already, and is the same as on disk.
+  static void update(final VirtualFile file, final CharSequence text) {
+    if (!isEnabled() || FileDocumentManager.getInstance().isFileModified(file))
+      return;
+
+    final String url = file.getUrl();
+    final long timeStamp = file.getTimeStamp();
+    final long length = file.getLength();
+    synchronized (QuickFindTokenIndex.class) {
+      load();
+      final Entry entry = entries.get(url);
+      if (entry != null && entry.timeStamp == timeStamp && entry.length == length)
+        return;
+    }
+
+    final int[] hashes = getTrigramHashes(text, 0, text.length());
+    synchronized (QuickFindTokenIndex.class) {
+      final Entry entry = entries.put(url, new Entry(timeStamp, length, hashes.length, hashes, -1));
+      final int urlLength = url.getBytes(StandardCharsets.UTF_8).length;
+      if (entry != null)
+        sizeInBytes -= getSizeInBytes(urlLength, entry.count);
+
+      sizeInBytes += getSizeInBytes(urlLength, hashes.length);
+      isDirty = true;
+      if (!isFlushScheduled) {
+        isFlushScheduled = true;
+        AppExecutorUtil.getAppScheduledExecutorService().schedule(QuickFindTokenIndex::flush, FLUSH_DELAY, TimeUnit.SECONDS);
+      }
+    }
+  }
+
+  // Returns the sorted and distinct hashes of the case folded trigrams (runs of three characters) in [from, to). Every
+  // trigram of a search string is in any text that contains a match, whether of a whole word or not, and in any case.
+  // A trigram of characters below 256 has a hash of its own, and others may share one, which can only cause a file to
+  // be read when it need not be.
+  private static int[] getTrigramHashes(final CharSequence text, final int from, final int to) {
+    if (to - from < 3)
+      return new int[0];
+
+    final int[] hashes = new int[to - from - 2];
+    int a = fold(text.charAt(from));
+    int b = fold(text.charAt(from + 1));
+    for (int i = from + 2; i < to; ++i) {
+      final int c = fold(text.charAt(i));
+      hashes[i - from - 2] = a << 16 ^ b << 8 ^ c;
+      a = b;
+      b = c;
+    }
+
+    Arrays.sort(hashes);
+    int distinct = 0;
+    for (int i = 0; i < hashes.length; ++i)
+      if (distinct == 0 || hashes[distinct - 1] != hashes[i])
+        hashes[distinct++] = hashes[i];
+
+    return Arrays.copyOf(hashes, distinct);
+  }
+
+  private static int fold(final char ch) {
+    return Character.toLowerCase(Character.toUpperCase(ch));
+  }
+
+  // Maps the latest generation that is intact, and deletes the others
+  private static void load() {
+    if (isLoaded)
+      return;
+
+    isLoaded = true;
+    Disposer.register(ApplicationManager.getApplication(), QuickFindTokenIndex::flush);
+    final Path directory = getDirectory();
+    if (!Files.isDirectory(directory))
+      return;
+
+    long latest = -1;
+    try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*")) {
+      for (final Path path : stream) {
+        final long generation = getGeneration(path);
+        if (generation > latest && map(path, generation))
+          latest = generation;
+      }
+    }
+    catch (final IOException e) {
+      e.printStackTrace();
+    }
+
+    deleteGenerations(latest);
+  }
+
+  private static long getGeneration(final Path path) {
+    final String name = path.getFileName().toString();
+    if (!name.endsWith(SUFFIX))
+      return -1;
+
+    try {
+      return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+    catch (final NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  // Reads the entries of a generation, if it is intact, and returns whether it is
+  private static boolean map(final Path path, final long generation) {
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+        return false;
+
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+        return false;
+
+      final CRC32 crc = new CRC32();
+      crc.update(buffer.duplicate().position(HEADER_SIZE));
+      if (crc.getValue() != buffer.getLong(12))
+        return false;
+
+      final LinkedHashMap<String,Entry> mapped = new LinkedHashMap<>();
+      long sizeInBytes = 0;
+      for (int i = 0, count = buffer.getInt(8), position = HEADER_SIZE; i < count; ++i) {
+        final int urlLength = buffer.getInt(position);
+        final byte[] url = new byte[urlLength];
+        buffer.duplicate().position(position + 4).get(url);
+        position += 4 + urlLength;
+        final int hashCount = buffer.getInt(position + 16);
+        mapped.put(new String(url, StandardCharsets.UTF_8), new Entry(buffer.getLong(position), buffer.getLong(position + 8), hashCount, null, position + 20));
+        position += 20 + hashCount * 4;
+        sizeInBytes += getSizeInBytes(urlLength, hashCount);
+      }
+
+      QuickFindTokenIndex.buffer = buffer;
+      QuickFindTokenIndex.generation = generation;
+      QuickFindTokenIndex.sizeInBytes = sizeInBytes;
+      entries.clear();
+      entries.putAll(mapped);
+      return true;
+    }
+    catch (final IOException | RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static void deleteGenerations(final long except) {
+    try (final DirectoryStream<Path> stream = Files.newDirectoryStream(getDirectory(), PREFIX + "*")) {
+      for (final Path path : stream) {
+        if (getGeneration(path) != except) {
+          try {
+            Files.delete(path);
+          }
+          catch (final IOException e) {
+            // A generation that is still mapped cannot be deleted on some platforms, so it is deleted on the next load
+          }
+        }
+      }
+    }
+    catch (final IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  // Writes the entries to the next generation, evicting the least recently used entries past the size cap
+  static synchronized void flush() {
+    isFlushScheduled = false;
+    if (!isDirty)
+      return;
+
+    isDirty = false;
+    final long maxBytes = Registry.intValue("eclipse.actions.quickfind.persistent.index.kilobytes", 65536) * 1024L;
+    for (final Iterator<Map.Entry<String,Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext() && sizeInBytes > maxBytes;) {
+      final Map.Entry<String,Entry> entry = iterator.next();
+      sizeInBytes -= getSizeInBytes(entry.getKey().getBytes(StandardCharsets.UTF_8).length, entry.getValue().count);
+      iterator.remove();
+    }
+
+    final Path directory = getDirectory();
+    final Path path = directory.resolve(PREFIX + (generation + 1) + SUFFIX);
+    final Path tempPath = directory.resolve(PREFIX + (generation + 1) + ".tmp");
+    try {
+      Files.createDirectories(directory);
+      try (final FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        channel.position(HEADER_SIZE);
+        final CRC32 crc = new CRC32();
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+        // Iterating an access ordered map does not reorder it, whereas get() would
+        for (final Map.Entry<String,Entry> mapEntry : entries.entrySet()) {
+          final Entry entry = mapEntry.getValue();
+          final byte[] bytes = mapEntry.getKey().getBytes(StandardCharsets.UTF_8);
+          out.writeInt(bytes.length);
+          out.write(bytes);
+          out.writeLong(entry.timeStamp);
+          out.writeLong(entry.length);
+          out.writeInt(entry.count);
+          for (int i = 0; i < entry.count; ++i)
+            out.writeInt(entry.getHash(i));
+        }
+
+        out.flush();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(entries.size()).putLong(crc.getValue());
+        header.flip();
+        channel.write(header, 0);
+        channel.force(true);
+      }
+
+      Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      if (map(path, generation + 1))
+        deleteGenerations(generation);
+    }
+    catch (final IOException e) {
+      e.printStackTrace();
+      isDirty = true;
+    }
+  }
+}
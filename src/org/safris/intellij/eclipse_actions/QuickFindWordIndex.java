@@ -0,0 +1,262 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.ObjIntConsumer;
+
+import com.intellij.openapi.editor.event.DocumentEvent;
+
+// Index of the start offsets of each word in a document, where a word is a run of identifier characters, keyed by the
+// case folded word. The matches of a whole word search for a single word are exactly its occurrences in this index (a
+// word that follows an escape, such as "nfoo" in "\nfoo", is also indexed without its first character, because a whole
+// word search accepts "foo" there), so such a search is a lookup rather than a scan of the text. The words are taken
+// from the text, rather than from the lexer, so that words in comments and literals are found as by a text search.
+final class QuickFindWordIndex {
+  // The number of edits past which they are applied to all of the occurrences at once
+  private static final int MAX_EDITS = 256;
+  // Approximate size of a word and its Occurrences, besides the characters of the word and the array of offsets
+  private static final int ENTRY_BYTES = 112;
+
+  private static final class Occurrences {
+    private int[] offsets = new int[4];
+    private int size;
+    // The number of edits that have been applied to the offsets
+    private long stamp;
+
+    private Occurrences(final long stamp) {
+      this.stamp = stamp;
+    }
+
+    private int firstAtOrAfter(final int offset) {
+      int from = 0;
+      for (int to = size, mid; from < to;) {
+        mid = (from + to) >>> 1;
+        if (offsets[mid] < offset)
+          from = mid + 1;
+        else
+          to = mid;
+      }
+
+      return from;
+    }
+
+    private void add(final int offset) {
+      final int index = size == 0 || offsets[size - 1] < offset ? size : firstAtOrAfter(offset);
+      if (size == offsets.length)
+        offsets = Arrays.copyOf(offsets, size * 2);
+
+      System.arraycopy(offsets, index, offsets, index + 1, size - index);
+      offsets[index] = offset;
+      ++size;
+    }
+
+    private void remove(final int offset) {
+      final int index = firstAtOrAfter(offset);
+      if (index < size && offsets[index] == offset) {
+        System.arraycopy(offsets, index + 1, offsets, index, size - index - 1);
+        --size;
+      }
+    }
+
+    private void shift(final int offset, final int delta) {
+      for (int i = firstAtOrAfter(offset); i < size; ++i)
+        offsets[i] += delta;
+    }
+  }
+
+  // Returns whether a whole word search for `searchString` is a search for a single word
+  static boolean isWord(final String searchString) {
+    if (searchString.isEmpty())
+      return false;
+
+    for (int i = 0; i < searchString.length(); ++i)
+      if (!Character.isJavaIdentifierPart(searchString.charAt(i)))
+        return false;
+
+    return true;
+  }
+
+  private static char fold(final char ch) {
+    return Character.toLowerCase(Character.toUpperCase(ch));
+  }
+
+  private static String fold(final CharSequence charSequence, final int from, final int to) {
+    final char[] chars = new char[to - from];
+    for (int i = from; i < to; ++i)
+      chars[i - from] = fold(charSequence.charAt(i));
+
+    return new String(chars);
+  }
+
+  // Calls `consumer` with each word in `charSequence` from `from` (which must be at a word boundary) to the end, and its
+  // offset plus `base`. A word at `from` follows `prior`.
+  private static void forEachWord(final CharSequence charSequence, final int from, final char prior, final int base, final ObjIntConsumer<String> consumer) {
+    for (int i = from, length = charSequence.length(); i < length;) {
+      if (!Character.isJavaIdentifierPart(charSequence.charAt(i))) {
+        ++i;
+        continue;
+      }
+
+      final int start = i;
+      while (i < length && Character.isJavaIdentifierPart(charSequence.charAt(i)))
+        ++i;
+
+      consumer.accept(fold(charSequence, start, i), base + start);
+      if (i - start > 1 && (start > from ? charSequence.charAt(start - 1) : prior) == '\\')
+        consumer.accept(fold(charSequence, start + 1, i), base + start + 1);
+    }
+  }
+
+  static QuickFindWordIndex build(final CharSequence charSequence) {
+    final QuickFindWordIndex wordIndex = new QuickFindWordIndex();
+    forEachWord(charSequence, 0, '\0', 0, wordIndex::add);
+    return wordIndex;
+  }
+
+  private final HashMap<String,Occurrences> words = new HashMap<>();
+  // The shifts of the edits that are not yet applied to all of the occurrences, as pairs of the offset from which the
+  // offsets are shifted, and the shift. The occurrences of a word apply them when they are next read, so that an edit
+  // does not shift the offsets of every word.
+  private final int[] edits = new int[MAX_EDITS * 2];
+  private int editCount;
+  // The number of edits before those in `edits`
+  private long editBase;
+  private long sizeInBytes;
+  // The last access by QuickFindCache, by which it is evicted along with the cached QuickFindIndex entries
+  long lastAccess;
+
+  private QuickFindWordIndex() {
+  }
+
+  long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  // Returns the occurrences of `word`, with the edits since they were last read applied
+  private Occurrences get(final String word) {
+    final Occurrences occurrences = words.get(word);
+    if (occurrences != null)
+      applyEdits(occurrences);
+
+    return occurrences;
+  }
+
+  private void applyEdits(final Occurrences occurrences) {
+    final long stamp = editBase + editCount;
+    for (long i = occurrences.stamp; i < stamp; ++i) {
+      final int j = (int)(i - editBase) << 1;
+      occurrences.shift(edits[j], edits[j + 1]);
+    }
+
+    occurrences.stamp = stamp;
+  }
+
+  private void addEdit(final int offset, final int delta) {
+    if (editCount == MAX_EDITS) {
+      for (final Occurrences occurrences : words.values())
+        applyEdits(occurrences);
+
+      editBase += editCount;
+      editCount = 0;
+    }
+
+    edits[editCount << 1] = offset;
+    edits[(editCount << 1) + 1] = delta;
+    ++editCount;
+  }
+
+  private void add(final String word, final int offset) {
+    Occurrences occurrences = get(word);
+    if (occurrences == null) {
+      words.put(word, occurrences = new Occurrences(editBase + editCount));
+      sizeInBytes += ENTRY_BYTES + word.length() * 2L + occurrences.offsets.length * 4L;
+    }
+
+    final int capacity = occurrences.offsets.length;
+    occurrences.add(offset);
+    sizeInBytes += (occurrences.offsets.length - capacity) * 4L;
+  }
+
+  private void remove(final String word, final int offset) {
+    final Occurrences occurrences = get(word);
+    if (occurrences != null) {
+      occurrences.remove(offset);
+      if (occurrences.size == 0) {
+        words.remove(word);
+        sizeInBytes -= ENTRY_BYTES + word.length() * 2L + occurrences.offsets.length * 4L;
+      }
+    }
+  }
+
+  // Returns the start and end offsets, packed in pairs, of the matches of a whole word search for the single word
+  // `searchString` in `charSequence`
+  int[] find(final CharSequence charSequence, final String searchString, final boolean isCaseSensitive) {
+    final Occurrences occurrences = get(fold(searchString, 0, searchString.length()));
+    if (occurrences == null)
+      return new int[0];
+
+    final int length = searchString.length();
+    final int[] offsets = new int[occurrences.size * 2];
+    int size = 0;
+    for (int i = 0; i < occurrences.size; ++i) {
+      final int offset = occurrences.offsets[i];
+      if (isCaseSensitive && !regionMatches(charSequence, offset, searchString))
+        continue;
+
+      offsets[size++] = offset;
+      offsets[size++] = offset + length;
+    }
+
+    return size == offsets.length ? offsets : Arrays.copyOf(offsets, size);
+  }
+
+  private static boolean regionMatches(final CharSequence charSequence, final int offset, final String string) {
+    for (int i = 0; i < string.length(); ++i)
+      if (charSequence.charAt(offset + i) != string.charAt(i))
+        return false;
+
+    return true;
+  }
+
+  // Re-indexes the words that the edit in `event` touches, and records the shift of the offsets of the words past it
+  void documentChanged(final DocumentEvent event) {
+    final CharSequence charSequence = event.getDocument().getImmutableCharSequence();
+    final int offset = event.getOffset();
+    final int newEnd = offset + event.getNewLength();
+    final int delta = event.getNewLength() - event.getOldLength();
+
+    // The words that touch the edit, from the start of the word before it, to the end of the word after it
+    int from = offset;
+    while (from > 0 && Character.isJavaIdentifierPart(charSequence.charAt(from - 1)))
+      --from;
+
+    int to = newEnd;
+    while (to < charSequence.length() && Character.isJavaIdentifierPart(charSequence.charAt(to)))
+      ++to;
+
+    final char prior = from > 0 ? charSequence.charAt(from - 1) : '\0';
+    final String oldText = String.valueOf(charSequence.subSequence(from, offset)) + event.getOldFragment() + charSequence.subSequence(newEnd, to);
+    forEachWord(oldText, 0, prior, from, this::remove);
+
+    if (delta != 0)
+      addEdit(to - delta, delta);
+
+    forEachWord(charSequence.subSequence(from, to), 0, prior, from, this::add);
+  }
+}
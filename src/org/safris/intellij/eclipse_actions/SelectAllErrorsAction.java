@@ -0,0 +1,114 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.intellij.codeInsight.daemon.impl.DaemonCodeAnalyzerEx;
+import com.intellij.codeInsight.daemon.impl.SeverityRegistrar;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.editor.CaretModel;
+import com.intellij.openapi.editor.CaretState;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.LogicalPosition;
+import com.intellij.openapi.editor.ScrollType;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.ui.SimpleListCellRenderer;
+
+// Puts a caret and selection on every highlight at or above a severity that is chosen from the severities that Select
+// Next Error goes to, so that repeated problems can be edited at once.
+public class SelectAllErrorsAction extends AnAction {
+  @Override
+  public void actionPerformed(final AnActionEvent e) {
+    final Project project = e.getProject();
+    if (project == null)
+      return;
+
+    final Editor editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
+    if (editor == null)
+      return;
+
+    final SeverityRegistrar severityRegistrar = SeverityRegistrar.getSeverityRegistrar(project);
+    final List<HighlightSeverity> severities = new ArrayList<>();
+    for (int idx = PlatformBridge.getSeveritiesCount(severityRegistrar) - 1; idx >= 1; --idx) {
+      final HighlightSeverity severity = severityRegistrar.getSeverityByIndex(idx);
+      if (severity != null && SeverityRegistrarHack.isGotoBySeverityEnabled(severity))
+        severities.add(severity);
+    }
+
+    if (severities.isEmpty())
+      return;
+
+    JBPopupFactory.getInstance().createPopupChooserBuilder(severities)
+      .setTitle("Select All of Severity")
+      .setRenderer(SimpleListCellRenderer.create("", HighlightSeverity::getDisplayCapitalizedName))
+      .setItemChosenCallback(severity -> selectAll(project, editor, severity))
+      .createPopup()
+      .showInBestPositionFor(editor);
+  }
+
+  private static void selectAll(final Project project, final Editor editor, final HighlightSeverity minSeverity) {
+    if (editor.isDisposed())
+      return;
+
+    // The highlights are gathered in one pass, packed as by QuickFindSearcher.match(), so that sorting them and dropping
+    // duplicates does not allocate per highlight
+    final Document document = editor.getDocument();
+    final long[][] matches = {new long[64]};
+    final int[] size = {0};
+    DaemonCodeAnalyzerEx.processHighlights(document, project, minSeverity, 0, document.getTextLength(), (info) -> {
+      if (size[0] == matches[0].length)
+        matches[0] = Arrays.copyOf(matches[0], size[0] * 2);
+
+      matches[0][size[0]++] = QuickFindSearcher.match(info.startOffset, info.endOffset);
+      return true;
+    });
+
+    if (size[0] == 0)
+      return;
+
+    final long[] sorted = Arrays.copyOf(matches[0], size[0]);
+    Arrays.sort(sorted);
+    // Overlapping selections would be merged by the caret model, so only the first of them is kept
+    final CaretModel caretModel = editor.getCaretModel();
+    final int maxCaretCount = caretModel.getMaxCaretCount();
+    final List<CaretState> caretStates = new ArrayList<>();
+    int lastEndOffset = -1;
+    for (int i = 0; i < sorted.length && caretStates.size() < maxCaretCount; ++i) {
+      final int startOffset = QuickFindSearcher.getStartOffset(sorted[i]);
+      final int endOffset = QuickFindSearcher.getEndOffset(sorted[i]);
+      if (startOffset < lastEndOffset || startOffset == lastEndOffset && startOffset == endOffset)
+        continue;
+
+      final LogicalPosition startPosition = editor.offsetToLogicalPosition(startOffset);
+      final LogicalPosition endPosition = editor.offsetToLogicalPosition(endOffset);
+      caretStates.add(new CaretState(endPosition, startPosition, endPosition));
+      lastEndOffset = endOffset;
+    }
+
+    // All carets are set in one batch, rather than added one at a time
+    caretModel.setCaretsAndSelections(caretStates);
+    editor.getScrollingModel().scrollToCaret(ScrollType.MAKE_VISIBLE);
+  }
+}
@@ -16,18 +16,226 @@
 
 package org.safris.intellij.eclipse_actions;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.jetbrains.annotations.NotNull;
 
+import com.intellij.codeInsight.TargetElementUtil;
+import com.intellij.codeInsight.hint.HintManagerImpl;
 import com.intellij.codeInsight.navigation.actions.GotoDeclarationAction;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.event.CaretEvent;
+import com.intellij.openapi.editor.event.CaretListener;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.impl.BackgroundableProcessIndicator;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.Navigatable;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiNameIdentifierOwner;
+import com.intellij.psi.PsiNamedElement;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.ui.SimpleListCellRenderer;
 
 public class SelectDeclarationAction extends GotoDeclarationAction implements SelectAction {
+  private static final int MAX_USAGES = 100;
+
+  // A declaration, or a usage, to go to, of which the range is selected if the caret lands in it
+  private static final class Target {
+    private final Navigatable navigatable;
+    private final TextRange range;
+    private final String text;
+
+    private Target(final Navigatable navigatable, final TextRange range, final String text) {
+      this.navigatable = navigatable;
+      this.range = range;
+      this.text = text;
+    }
+  }
+
+  // Resolves the targets at the caret in a read action that restarts on write actions, and is canceled when the caret
+  // moves or the document is changed before it finishes. Only the resolved targets are handed to the EDT.
+  private final class Resolve extends Task.Backgroundable {
+    private final Editor editor;
+    private final int offset;
+    private final Disposable disposable = Disposer.newDisposable("SelectDeclarationAction.Resolve");
+    private final ProgressIndicator indicator = new BackgroundableProcessIndicator(this);
+    private final List<Target> targets = new ArrayList<>();
+    private String title;
+
+    private Resolve(final Project project, final Editor editor) {
+      super(project, "Resolving declaration", true);
+      this.editor = editor;
+      this.offset = editor.getCaretModel().getOffset();
+      Disposer.register(project, disposable);
+      editor.getCaretModel().addCaretListener(new CaretListener() {
+        @Override
+        public void caretPositionChanged(@NotNull final CaretEvent event) {
+          indicator.cancel();
+        }
+      }, disposable);
+      editor.getDocument().addDocumentListener(new DocumentListener() {
+        @Override
+        public void documentChanged(@NotNull final DocumentEvent event) {
+          indicator.cancel();
+        }
+      }, disposable);
+    }
+
+    @Override
+    public void run(@NotNull final ProgressIndicator indicator) {
+      ReadAction.nonBlocking(this::resolve)
+        .wrapProgress(indicator)
+        .executeSynchronously();
+    }
+
+    // As GotoDeclarationAction: the declarations of the reference at the caret, or else the usages of the declaration
+    // of which the name is at the caret
+    private void resolve() {
+      targets.clear();
+      final PsiReference reference = TargetElementUtil.findReference(editor, offset);
+      if (reference == null) {
+        final PsiElement element = TargetElementUtil.findTargetElement(editor, TargetElementUtil.ELEMENT_NAME_ACCEPTED, offset);
+        if (element != null) {
+          title = "Usages of " + getName(element);
+          ReferencesSearch.search(element).forEach(usage -> {
+            addUsage(usage);
+            return targets.size() < MAX_USAGES;
+          });
+        }
+
+        return;
+      }
+
+      title = "Choose Declaration";
+      final PsiElement element = TargetElementUtil.findTargetElement(editor, TargetElementUtil.getInstance().getAllAccepted(), offset);
+      if (element != null)
+        addDeclaration(element);
+      else
+        for (final PsiElement candidate : TargetElementUtil.getInstance().getTargetCandidates(reference))
+          addDeclaration(candidate);
+    }
+
+    private void addDeclaration(final PsiElement element) {
+      final PsiElement target = element.getNavigationElement();
+      if (!(target instanceof Navigatable))
+        return;
+
+      final PsiElement nameIdentifier = target instanceof PsiNameIdentifierOwner ? ((PsiNameIdentifierOwner)target).getNameIdentifier() : null;
+      final PsiFile file = target.getContainingFile();
+      targets.add(new Target((Navigatable)target, nameIdentifier != null ? nameIdentifier.getTextRange() : null, file != null ? getName(target) + " in " + file.getName() : getName(target)));
+    }
+
+    private void addUsage(final PsiReference usage) {
+      final PsiElement element = usage.getElement();
+      final PsiFile file = element.getContainingFile();
+      final VirtualFile virtualFile = file != null ? file.getVirtualFile() : null;
+      final Document document = file != null ? PsiDocumentManager.getInstance(myProject).getDocument(file) : null;
+      if (virtualFile == null || document == null)
+        return;
+
+      final TextRange range = usage.getRangeInElement().shiftRight(element.getTextRange().getStartOffset());
+      final int line = document.getLineNumber(range.getStartOffset());
+      final String text = document.getCharsSequence().subSequence(document.getLineStartOffset(line), document.getLineEndOffset(line)).toString().trim();
+      targets.add(new Target(new OpenFileDescriptor(myProject, virtualFile, range.getStartOffset()), range, file.getName() + ":" + (line + 1) + "  " + text));
+    }
+
+    @Override
+    public void onSuccess() {
+      // The caret is about to be moved by the navigation itself
+      Disposer.dispose(disposable);
+      if (editor.isDisposed())
+        return;
+
+      if (targets.isEmpty()) {
+        HintManagerImpl.getInstanceImpl().showInformationHint(editor, "Cannot find declaration to go to");
+      }
+      else if (targets.size() == 1) {
+        navigate(myProject, targets.get(0));
+      }
+      else {
+        JBPopupFactory.getInstance().createPopupChooserBuilder(targets)
+          .setTitle(title)
+          .setRenderer(SimpleListCellRenderer.create("", target -> target.text))
+          .setItemChosenCallback(target -> navigate(myProject, target))
+          .createPopup()
+          .showInBestPositionFor(editor);
+      }
+    }
+
+    @Override
+    public void onFinished() {
+      Disposer.dispose(disposable);
+      if (resolve == this)
+        resolve = null;
+    }
+  }
+
+  private static Resolve resolve;
+
+  private static String getName(final PsiElement element) {
+    final String name = element instanceof PsiNamedElement ? ((PsiNamedElement)element).getName() : null;
+    return name != null ? name : element.toString();
+  }
+
   @Override
   public void actionPerformed(@NotNull final AnActionEvent e) {
-    super.actionPerformed(e);
     final Project project = e.getProject();
+    if (project != null && Registry.is("eclipse.actions.selectdeclaration.background", false) && !DumbService.isDumb(project)) {
+      final Editor editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
+      if (editor != null) {
+        if (resolve != null)
+          resolve.indicator.cancel();
+
+        PsiDocumentManager.getInstance(project).commitDocument(editor.getDocument());
+        resolve = new Resolve(project, editor);
+        ProgressManager.getInstance().runProcessWithProgressAsynchronously(resolve, resolve.indicator);
+        return;
+      }
+    }
+
+    super.actionPerformed(e);
     if (project != null)
       selectWordAtCaret(project);
   }
+
+  private void navigate(final Project project, final Target target) {
+    if (!target.navigatable.canNavigate())
+      return;
+
+    target.navigatable.navigate(true);
+    final Editor targetEditor = FileEditorManager.getInstance(project).getSelectedTextEditor();
+    if (targetEditor != null && target.range != null) {
+      // Unless the text of the editor is not that of the PSI, such as for a decompiled class, the caret is now in the
+      // range
+      final TextRange range = target.range;
+      final int caretOffset = targetEditor.getCaretModel().getOffset();
+      if (range.getEndOffset() <= targetEditor.getDocument().getTextLength() && range.getStartOffset() <= caretOffset && caretOffset <= range.getEndOffset()) {
+        targetEditor.getCaretModel().moveToOffset(range.getEndOffset());
+        targetEditor.getSelectionModel().setSelection(range.getStartOffset(), range.getEndOffset());
+        return;
+      }
+    }
+
+    selectWordAtCaret(project);
+  }
 }
\ No newline at end of file
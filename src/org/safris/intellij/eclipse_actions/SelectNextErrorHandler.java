@@ -17,9 +17,8 @@
 package org.safris.intellij.eclipse_actions;
 
 import java.awt.Point;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JComponent;
 
@@ -30,7 +29,6 @@ import com.intellij.analysis.problemsView.toolWindow.ProblemsView;
 import com.intellij.codeInsight.CodeInsightActionHandler;
 import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.codeInsight.daemon.DaemonCodeAnalyzerSettings;
-import com.intellij.codeInsight.daemon.impl.DaemonCodeAnalyzerEx;
 import com.intellij.codeInsight.daemon.impl.DaemonCodeAnalyzerImpl;
 import com.intellij.codeInsight.daemon.impl.HighlightInfo;
 import com.intellij.codeInsight.daemon.impl.SeverityRegistrar;
@@ -47,32 +45,27 @@ import com.intellij.openapi.editor.FoldRegion;
 import com.intellij.openapi.editor.ScrollType;
 import com.intellij.openapi.editor.ScrollingModel;
 import com.intellij.openapi.editor.SelectionModel;
+import com.intellij.openapi.editor.ex.MarkupModelEx;
 import com.intellij.openapi.editor.ex.RangeHighlighterEx;
+import com.intellij.openapi.editor.impl.DocumentMarkupModel;
+import com.intellij.openapi.editor.impl.event.MarkupModelListener;
+import com.intellij.openapi.editor.markup.MarkupModel;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
 import com.intellij.openapi.fileEditor.ex.IdeDocumentHistory;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.ui.LightweightHint;
+import com.intellij.util.Alarm;
 import com.intellij.util.messages.MessageBusConnection;
 import com.intellij.util.ui.accessibility.AccessibleContextUtil;
 
 public class SelectNextErrorHandler implements CodeInsightActionHandler {
-  private static final Field navigationShiftField;
-  private static final Method getSeveritiesCountMethod;
-
-  static {
-    try {
-      navigationShiftField = HighlightInfo.class.getDeclaredField("navigationShift");
-      navigationShiftField.setAccessible(true);
-
-      getSeveritiesCountMethod = SeverityRegistrar.class.getDeclaredMethod("getSeveritiesCount");
-      getSeveritiesCountMethod.setAccessible(true);
-    }
-    catch (final NoSuchFieldException | NoSuchMethodException e) {
-      throw new ExceptionInInitializerError(e);
-    }
-  }
+  private static final int STABILITY_DELAY = 300;
 
   private final boolean myGoForward;
 
@@ -84,7 +77,7 @@ public class SelectNextErrorHandler implements CodeInsightActionHandler {
   public void invoke(@NotNull final Project project, @NotNull final Editor editor, @NotNull final PsiFile file) {
     final SelectionModel selectionModel = editor.getSelectionModel();
     final int caretOffset = selectionModel.getSelectedText() != null ? selectionModel.getSelectionStart() + 1 : editor.getCaretModel().getOffset();
-    this.gotoNextError(project, editor, file, caretOffset);
+    this.gotoNextError(project, editor, file, caretOffset, ErrorRollover.isEnabled());
   }
 
   @Override
@@ -92,87 +85,70 @@ public class SelectNextErrorHandler implements CodeInsightActionHandler {
     return false;
   }
 
-  private void gotoNextError(final Project project, final Editor editor, final PsiFile file, final int caretOffset) {
+  private void gotoNextError(final Project project, final Editor editor, final PsiFile file, final int caretOffset, final boolean canRollOver) {
     final SeverityRegistrar severityRegistrar = SeverityRegistrar.getSeverityRegistrar(project);
     final DaemonCodeAnalyzerSettings settings = DaemonCodeAnalyzerSettings.getInstance();
     int maxSeverity = 1;
     if (settings.isNextErrorActionGoesToErrorsFirst()) {
-      try {
-        maxSeverity = (Integer)getSeveritiesCountMethod.invoke(severityRegistrar) - 1;
-      }
-      catch (final IllegalAccessException | InvocationTargetException e) {
-        e.printStackTrace();
-      }
+      maxSeverity = PlatformBridge.getSeveritiesCount(severityRegistrar) - 1;
     }
 
-    for(int idx = maxSeverity; idx >= 1; --idx) {
-      final HighlightSeverity minSeverity = severityRegistrar.getSeverityByIndex(idx);
-      if (minSeverity != null) {
-        final HighlightInfo infoToGo = this.findInfo(project, editor, caretOffset, minSeverity);
-        if (infoToGo != null) {
-          navigateToError(project, editor, infoToGo, () -> {
-            if (Registry.is("error.navigation.show.tooltip")) {
-              final HighlightInfo fullInfo = ((DaemonCodeAnalyzerImpl)DaemonCodeAnalyzer.getInstance(project)).findHighlightByOffset(editor.getDocument(), editor.getCaretModel().getOffset(), false);
-              final HighlightInfo info = fullInfo != null ? fullInfo : infoToGo;
-              EditorMouseHoverPopupManager.getInstance().showInfoTooltip(editor, info, editor.getCaretModel().getOffset(), false, true);
-            }
-          });
-          return;
-        }
-      }
+    final List<HighlightSeverity> severities = new ArrayList<>();
+    for (int idx = 1; idx <= maxSeverity; ++idx) {
+      final HighlightSeverity severity = severityRegistrar.getSeverityByIndex(idx);
+      if (severity != null)
+        severities.add(severity);
     }
 
-    this.showMessageWhenNoHighlights(project, file, editor, caretOffset);
-  }
-
-
-  private HighlightInfo findInfo(@NotNull final Project project, @NotNull final Editor editor, final int caretOffset, @NotNull final HighlightSeverity minSeverity) {
-    final Document document = editor.getDocument();
-    final HighlightInfo[][] infoToGo = new HighlightInfo[2][2];
-    final int caretOffsetIfNoLuck = this.myGoForward ? -1 : document.getTextLength();
-    DaemonCodeAnalyzerEx.processHighlights(document, project, minSeverity, 0, document.getTextLength(), (info) -> {
-      final int startOffset = getNavigationPositionFor(info, document);
-      if (SeverityRegistrarHack.isGotoBySeverityEnabled(info.getSeverity())) {
-        infoToGo[0][0] = this.getBetterInfoThan(infoToGo[0][0], caretOffset, startOffset, info);
-        infoToGo[1][0] = this.getBetterInfoThan(infoToGo[1][0], caretOffsetIfNoLuck, startOffset, info);
+    final HighlightInfo infoToGo = severities.isEmpty() ? null : ErrorNavigationIndex.get(project, editor.getDocument(), severityRegistrar, severities).find(caretOffset, this.myGoForward);
+    if (canRollOver) {
+      // Past the last (or first) error of the file, which is when the index wraps around, go on to the next problem file
+      final boolean isLast = infoToGo == null ? ((DaemonCodeAnalyzerImpl)DaemonCodeAnalyzer.getInstance(project)).isErrorAnalyzingFinished(file) : this.myGoForward ? getNavigationPositionFor(infoToGo, editor.getDocument()) <= caretOffset : getNavigationPositionFor(infoToGo, editor.getDocument()) >= caretOffset;
+      if (isLast && this.rollOver(project, file)) {
+        NavigationScheduler.cancel(editor);
+        return;
       }
 
-      infoToGo[0][1] = this.getBetterInfoThan(infoToGo[0][1], caretOffset, startOffset, info);
-      infoToGo[1][1] = this.getBetterInfoThan(infoToGo[1][1], caretOffsetIfNoLuck, startOffset, info);
-      return true;
-    });
-
-    if (infoToGo[0][0] == null) {
-      infoToGo[0][0] = infoToGo[1][0];
-    }
-
-    if (infoToGo[0][1] == null) {
-      infoToGo[0][1] = infoToGo[1][1];
+      final VirtualFile virtualFile = file.getVirtualFile();
+      if (virtualFile != null)
+        ErrorRollover.prefetch(project, virtualFile, this.myGoForward);
     }
 
-    if (infoToGo[0][0] == null) {
-      infoToGo[0][0] = infoToGo[0][1];
+    if (infoToGo != null) {
+      navigateToError(project, editor, infoToGo, () -> {
+        if (Registry.is("error.navigation.show.tooltip")) {
+          final HighlightInfo fullInfo = ((DaemonCodeAnalyzerImpl)DaemonCodeAnalyzer.getInstance(project)).findHighlightByOffset(editor.getDocument(), editor.getCaretModel().getOffset(), false);
+          final HighlightInfo info = fullInfo != null ? fullInfo : infoToGo;
+          EditorMouseHoverPopupManager.getInstance().showInfoTooltip(editor, info, editor.getCaretModel().getOffset(), false, true);
+        }
+      });
+      return;
     }
 
-    return infoToGo[0][0];
+    this.showMessageWhenNoHighlights(project, file, editor, caretOffset, canRollOver);
   }
 
-  private HighlightInfo getBetterInfoThan(final HighlightInfo infoToGo, final int caretOffset, final int startOffset, final HighlightInfo info) {
-    return isBetterThan(infoToGo, caretOffset, startOffset) ? info : infoToGo;
-  }
+  // Opens the next problem file after `file`, and goes to its first (or last) error. The errors of a file that was not
+  // open are not known until the daemon has highlighted it, and are waited on as for any other file.
+  private boolean rollOver(final Project project, final PsiFile file) {
+    final VirtualFile virtualFile = file.getVirtualFile();
+    final VirtualFile next = virtualFile == null ? null : ErrorRollover.next(project, virtualFile, this.myGoForward);
+    if (next == null)
+      return false;
 
-  private boolean isBetterThan(final HighlightInfo oldInfo, final int caretOffset, final int newOffset) {
-    if (oldInfo == null)
-      return true;
+    final Editor nextEditor = FileEditorManager.getInstance(project).openTextEditor(new OpenFileDescriptor(project, next), true);
+    if (nextEditor == null)
+      return false;
 
-    final int oldOffset = getNavigationPositionFor(oldInfo, oldInfo.getHighlighter().getDocument());
-    if (this.myGoForward)
-      return caretOffset < oldOffset != caretOffset < newOffset ? caretOffset < newOffset : newOffset < oldOffset;
+    final PsiFile nextFile = PsiDocumentManager.getInstance(project).getPsiFile(nextEditor.getDocument());
+    if (nextFile == null)
+      return false;
 
-    return caretOffset <= oldOffset != caretOffset <= newOffset ? caretOffset > newOffset : newOffset > oldOffset;
+    this.gotoNextError(project, nextEditor, nextFile, this.myGoForward ? 0 : nextEditor.getDocument().getTextLength(), false);
+    return true;
   }
 
-  private void showMessageWhenNoHighlights(final Project project, final PsiFile file, final Editor editor, final int caretOffset) {
+  private void showMessageWhenNoHighlights(final Project project, final PsiFile file, final Editor editor, final int caretOffset, final boolean canRollOver) {
     final DaemonCodeAnalyzerImpl codeHighlighter = (DaemonCodeAnalyzerImpl)DaemonCodeAnalyzer.getInstance(project);
     final HintManagerImpl hintManager = HintManagerImpl.getInstanceImpl();
     if (codeHighlighter.isErrorAnalyzingFinished(file)) {
@@ -188,14 +164,38 @@ public class SelectNextErrorHandler implements CodeInsightActionHandler {
       hint.addHintListener((eventObject) -> {
         Disposer.dispose(hintDisposable);
       });
+      final Runnable retry = () -> {
+        hint.hide();
+        ErrorNavigationIndex.invalidate(project);
+        SelectNextErrorHandler.this.gotoNextError(project, editor, file, caretOffset, canRollOver);
+      };
       final MessageBusConnection busConnection = project.getMessageBus().connect(hintDisposable);
       busConnection.subscribe(DaemonCodeAnalyzer.DAEMON_EVENT_TOPIC, new DaemonCodeAnalyzer.DaemonListener() {
         @Override
         public void daemonFinished() {
-          hint.hide();
-          SelectNextErrorHandler.this.gotoNextError(project, editor, file, caretOffset);
+          retry.run();
         }
       });
+      // Rather than wait for the whole pass of the daemon, retry as soon as it adds a highlight to go to, after a short
+      // while for it to add any better one along with it
+      final SeverityRegistrar severityRegistrar = SeverityRegistrar.getSeverityRegistrar(project);
+      final HighlightSeverity minSeverity = severityRegistrar.getSeverityByIndex(1);
+      final MarkupModel markupModel = DocumentMarkupModel.forDocument(editor.getDocument(), project, true);
+      if (minSeverity != null && markupModel instanceof MarkupModelEx) {
+        final Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, hintDisposable);
+        ((MarkupModelEx)markupModel).addMarkupModelListener(hintDisposable, new MarkupModelListener() {
+          @Override
+          public void afterAdded(@NotNull final RangeHighlighterEx highlighter) {
+            if (!alarm.isEmpty())
+              return;
+
+            final HighlightInfo info = HighlightInfo.fromRangeHighlighter(highlighter);
+            if (info != null && severityRegistrar.compare(info.getSeverity(), minSeverity) >= 0 && (SelectNextErrorHandler.this.myGoForward ? info.getActualStartOffset() >= caretOffset : info.getActualStartOffset() < caretOffset))
+              alarm.addRequest(retry, STABILITY_DELAY);
+          }
+        });
+      }
+
       hintManager.showEditorHint(hint, editor, p, 42, 0, false, (short)1);
     }
   }
@@ -205,53 +205,54 @@ public class SelectNextErrorHandler implements CodeInsightActionHandler {
     final int offset = info.endOffset; //getNavigationPositionFor(info, editor.getDocument());
     final int endOffset = info.getActualEndOffset();
     final ScrollingModel scrollingModel = editor.getScrollingModel();
-    if (offset != oldOffset) {
-      final ScrollType scrollType = offset > oldOffset ? ScrollType.CENTER_DOWN : ScrollType.CENTER_UP;
+    final boolean isMoved = offset != oldOffset;
+    if (isMoved) {
       editor.getSelectionModel().removeSelection();
       editor.getCaretModel().removeSecondaryCarets();
       editor.getCaretModel().moveToOffset(offset);
       editor.getSelectionModel().setSelection(info.startOffset, info.endOffset);
-      scrollingModel.scrollToCaret(scrollType);
-      final FoldRegion regionAtOffset = editor.getFoldingModel().getCollapsedRegionAtOffset(offset);
-      if (regionAtOffset != null) {
-        editor.getFoldingModel().runBatchFoldingOperation(() -> {
-          regionAtOffset.setExpanded(true);
-        });
-      }
     }
 
-    scrollingModel.runActionOnScrollingFinished(() -> {
-      final int maxOffset = editor.getDocument().getTextLength() - 1;
-      if (maxOffset != -1) {
-        scrollingModel.scrollTo(editor.offsetToLogicalPosition(Math.min(maxOffset, endOffset)), ScrollType.MAKE_VISIBLE);
-        scrollingModel.scrollTo(editor.offsetToLogicalPosition(Math.min(maxOffset, offset)), ScrollType.MAKE_VISIBLE);
-        if (postNavigateRunnable != null) {
-          postNavigateRunnable.run();
+    IdeDocumentHistory.getInstance(project).includeCurrentCommandAsNavigation();
+    // The caret and selection are moved right away, because the next repeat goes on from them, but the scrolling,
+    // tooltip and Problems view are only updated for the last error of a burst
+    NavigationScheduler.schedule(editor, () -> {
+      if (isMoved) {
+        scrollingModel.scrollToCaret(offset > oldOffset ? ScrollType.CENTER_DOWN : ScrollType.CENTER_UP);
+        final FoldRegion regionAtOffset = editor.getFoldingModel().getCollapsedRegionAtOffset(offset);
+        if (regionAtOffset != null) {
+          editor.getFoldingModel().runBatchFoldingOperation(() -> {
+            regionAtOffset.setExpanded(true);
+          });
+        }
+      }
+
+      scrollingModel.runActionOnScrollingFinished(() -> {
+        final int maxOffset = editor.getDocument().getTextLength() - 1;
+        if (maxOffset != -1) {
+          scrollingModel.scrollTo(editor.offsetToLogicalPosition(Math.min(maxOffset, endOffset)), ScrollType.MAKE_VISIBLE);
+          scrollingModel.scrollTo(editor.offsetToLogicalPosition(Math.min(maxOffset, offset)), ScrollType.MAKE_VISIBLE);
+          if (postNavigateRunnable != null) {
+            postNavigateRunnable.run();
+          }
         }
+      });
+      final RangeHighlighterEx highlighter = info.getHighlighter();
+      if (highlighter != null) {
+        ProblemsView.selectHighlighterIfVisible(project, highlighter);
       }
     });
-    IdeDocumentHistory.getInstance(project).includeCurrentCommandAsNavigation();
-    final RangeHighlighterEx highlighter = info.getHighlighter();
-    if (highlighter != null) {
-      ProblemsView.selectHighlighterIfVisible(project, highlighter);
-    }
   }
 
-  private static int getNavigationPositionFor(final HighlightInfo info, final Document document) {
+  static int getNavigationPositionFor(final HighlightInfo info, final Document document) {
     final int start = info.getActualStartOffset();
     if (start >= document.getTextLength())
       return document.getTextLength();
 
     final char c = document.getCharsSequence().charAt(start);
     int shift = 1;
-    if (info.isAfterEndOfLine() && c != '\n') {
-      try {
-        shift = navigationShiftField.getInt(info);
-      }
-      catch (final IllegalAccessException e) {
-        e.printStackTrace();
-      }
-    }
+    if (info.isAfterEndOfLine() && c != '\n')
+      shift = PlatformBridge.getNavigationShift(info);
 
     final int offset = info.getActualStartOffset() + shift;
     return Math.min(offset, document.getTextLength());
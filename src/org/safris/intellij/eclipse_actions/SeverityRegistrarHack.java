@@ -17,14 +17,46 @@
 package org.safris.intellij.eclipse_actions;
 
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jetbrains.annotations.NotNull;
 
 import com.intellij.codeInsight.daemon.impl.SeveritiesProvider;
+import com.intellij.codeInsight.daemon.impl.SeverityRegistrar;
 import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
 
 public class SeverityRegistrarHack {
+  // The results of isGotoBySeverityEnabled() by severity, so that error navigation does not iterate the extensions for
+  // each highlight. They are dropped when the extensions or the severities change.
+  private static final Map<HighlightSeverity,Boolean> isGotoBySeverityEnabled = new ConcurrentHashMap<>();
+  private static boolean isInitialized;
+
+  private static void init() {
+    if (isInitialized)
+      return;
+
+    isInitialized = true;
+    final Application application = ApplicationManager.getApplication();
+    SeveritiesProvider.EP_NAME.addChangeListener(isGotoBySeverityEnabled::clear, application);
+    // Published on the message bus of a project, and broadcast to that of the application
+    application.getMessageBus().connect(application).subscribe(SeverityRegistrar.SEVERITIES_CHANGED_TOPIC, isGotoBySeverityEnabled::clear);
+  }
+
   static boolean isGotoBySeverityEnabled(@NotNull final HighlightSeverity minSeverity) {
+    init();
+    final Boolean cached = isGotoBySeverityEnabled.get(minSeverity);
+    if (cached != null)
+      return cached;
+
+    final boolean isEnabled = isGotoBySeverityEnabled0(minSeverity);
+    isGotoBySeverityEnabled.put(minSeverity, isEnabled);
+    return isEnabled;
+  }
+
+  private static boolean isGotoBySeverityEnabled0(@NotNull final HighlightSeverity minSeverity) {
     final Iterator<SeveritiesProvider> var1 = SeveritiesProvider.EP_NAME.getIterable().iterator();
 
     SeveritiesProvider provider;
@@ -0,0 +1,87 @@
+/* Copyright (c) 2018 Seva Safris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.safris.intellij.eclipse_actions;
+
+import java.util.Random;
+
+import com.intellij.find.FindManager;
+import com.intellij.find.FindModel;
+import com.intellij.find.FindResult;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+// Differential test of the whole word (and case) semantics of QuickFindLiteralMatcher and QuickFindRegexMatcher against
+// FindManager.findString(), over random texts of identifier characters, escapes, and repeated punctuation
+public class QuickFindMatcherTest extends BasePlatformTestCase {
+  private static final String ALPHABET = "aAbB_ \\\u00e9\u00c9.=\n";
+  private static final String[] REGEXES = {"a+", "=+", "\\.a", "[a=]", "a\\.?b"};
+
+  private static String random(final Random random, final String alphabet, final int length) {
+    final StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; ++i)
+      builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+
+    return builder.toString();
+  }
+
+  private static FindModel newFindModel(final String stringToFind, final boolean isRegularExpression, final Random random) {
+    final FindModel findModel = new FindModel();
+    findModel.setStringToFind(stringToFind);
+    findModel.setRegularExpressions(isRegularExpression);
+    findModel.setCaseSensitive(random.nextBoolean());
+    findModel.setWholeWordsOnly(random.nextBoolean());
+    return findModel;
+  }
+
+  private void assertFind(final String text, final int offset, final FindModel findModel, final long match) {
+    final FindResult findResult = FindManager.getInstance(getProject()).findString(text, offset, findModel);
+    final long expected = findResult.isStringFound() ? QuickFindSearcher.match(findResult.getStartOffset(), findResult.getEndOffset()) : QuickFindSearcher.NOT_FOUND;
+    assertEquals("\"" + findModel.getStringToFind() + "\" in \"" + text + "\" from " + offset + (findModel.isCaseSensitive() ? ", case sensitive" : "") + (findModel.isWholeWordsOnly() ? ", whole words" : ""), expected, match);
+  }
+
+  public void testWholeWords() {
+    final FindModel findModel = new FindModel();
+    findModel.setWholeWordsOnly(true);
+    findModel.setStringToFind(".foo");
+    assertFind("a.foo", 0, findModel, new QuickFindLiteralMatcher(".foo", false, true).find("a.foo", 0));
+    findModel.setStringToFind("=");
+    assertFind("a == b", 0, findModel, new QuickFindLiteralMatcher("=", false, true).find("a == b", 0));
+  }
+
+  public void testLiteral() {
+    final Random random = new Random(0);
+    for (int i = 0; i < 20000; ++i) {
+      final String stringToFind = random(random, ALPHABET.substring(0, ALPHABET.length() - 1), 1 + random.nextInt(3));
+      final String text = random(random, ALPHABET, random.nextInt(40));
+      final FindModel findModel = newFindModel(stringToFind, false, random);
+      final int offset = random.nextInt(text.length() + 1);
+      assertFind(text, offset, findModel, new QuickFindLiteralMatcher(stringToFind, findModel.isCaseSensitive(), findModel.isWholeWordsOnly()).find(text, offset));
+    }
+  }
+
+  public void testRegex() {
+    final Random random = new Random(0);
+    for (int i = 0; i < 20000; ++i) {
+      final String regex = REGEXES[random.nextInt(REGEXES.length)];
+      final String text = random(random, ALPHABET, random.nextInt(40));
+      final FindModel findModel = newFindModel(regex, true, random);
+      final QuickFindRegexMatcher regexMatcher = QuickFindRegexMatcher.compile(regex, findModel.isCaseSensitive(), findModel.isWholeWordsOnly());
+      final int offset = random.nextInt(text.length() + 1);
+      if (regexMatcher != null)
+        assertFind(text, offset, findModel, regexMatcher.find(text, offset, QuickFindRegexMatcher.Budget.unbounded()));
+    }
+  }
+}